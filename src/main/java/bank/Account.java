@@ -4,7 +4,9 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.sql.SQLException;
 
-import sql.Database;
+import sql.LedgerStore;
+import sql.NoOpStore;
+import sql.UnitOfWork;
 
 /**
  * Class to handle an account's details and operations
@@ -13,9 +15,11 @@ import sql.Database;
 public class Account {
 
 	private String name;
-	private int ID;
+	private int ID, scale;
 	private BigDecimal balance;
 	private Currency currency;
+	// Accounts only save their changes once they're part of the assets
+	private LedgerStore store = new NoOpStore();
 
 	/**
 	 * Creates a new account
@@ -29,6 +33,7 @@ public class Account {
 		this.balance = balance;
 		if (currency == null) { throw new IllegalArgumentException("Currency must not be null"); }
 		this.currency = currency;
+		this.scale = currency.getScale();
 	}
 
 	/**
@@ -45,8 +50,19 @@ public class Account {
 	 */
 	public void setName(String name) throws SQLException {
 		if (name == null || name.isEmpty()) { throw new IllegalArgumentException("The Account's name must not be empty."); }
-		this.name = name.trim();
-		Database.updateName(this.ID, name);
+		String previous = this.name;
+		String written = name.trim();
+		try (UnitOfWork work = this.store.begin()) {
+			this.name = written;
+			// Undos may run after later changes, which are kept
+			work.onRollback(() -> {
+				if (this.name == written) {
+					this.name = previous;
+				}
+			});
+			this.store.updateName(this.ID, name);
+			work.commit();
+		}
 	}
 
 	/**
@@ -65,6 +81,31 @@ public class Account {
 		this.ID = id;
 	}
 
+	/**
+	 * Sets the store the account's changes are saved in
+	 * @param store - Assets' ledger store
+	 */
+	void setStore(LedgerStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Returns the number of decimal places the account's amounts are stored with
+	 * Starts as the currency's scale and only grows if the account changes currency
+	 * @return scale
+	 */
+	public int getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * Assigns the database's stored scale
+	 * @param scale - Number of decimal places
+	 */
+	public void setScale(int scale) {
+		this.scale = scale;
+	}
+
 	/**
 	 * Returns the account's currency
 	 * @return currency
@@ -79,8 +120,29 @@ public class Account {
 	 */
 	public void setCurrency(Currency currency) throws SQLException {
 		if (currency == null) { throw new IllegalArgumentException("Currency must not be null"); }
-		this.currency = currency;
-		Database.updateCurrency(this.ID, currency.getID());
+		Currency previous = this.currency;
+		int previousScale = this.scale;
+		try (UnitOfWork work = this.store.begin()) {
+			this.currency = currency;
+			work.onRollback(() -> {
+				if (this.currency == currency) {
+					this.currency = previous;
+				}
+			});
+			this.store.updateCurrency(this.ID, currency.getID());
+
+			// Stored amounts are only ever rescaled up so no precision is lost
+			if (currency.getScale() > this.scale) {
+				this.store.rescaleAccount(this.ID, this.scale, currency.getScale());
+				this.scale = currency.getScale();
+				work.onRollback(() -> {
+					if (this.scale == currency.getScale()) {
+						this.scale = previousScale;
+					}
+				});
+			}
+			work.commit();
+		}
 	}
 
 	/**
@@ -94,12 +156,26 @@ public class Account {
 	/**
 	 * Updates the current balance
 	 * Unlike transactions it doesnt log the update nor
-	 * ledger overview information
+	 * ledger overview information, so the edit is reported as drift by the Reconciler
+	 * Balances with more decimals than the account's scale are rejected before anything changes
 	 * @param balance - New balance
 	 */
 	public void setBalance(BigDecimal balance) throws SQLException {
-		this.balance = balance;
-		Database.updateBalance(this.ID, this.balance);
+		if (balance.stripTrailingZeros().scale() > this.scale) {
+			throw new IllegalArgumentException("Balance " + balance.toPlainString() + " has more decimals than " + this.name + " allows.");
+		}
+		BigDecimal previous = this.balance;
+		try (UnitOfWork work = this.store.begin()) {
+			this.balance = balance;
+			// Undos may run after later changes, which are kept
+			work.onRollback(() -> {
+				if (this.balance == balance) {
+					this.balance = previous;
+				}
+			});
+			this.store.updateBalance(this.ID, this.balance, this.scale);
+			work.commit();
+		}
 	}
 
 	/**
@@ -107,8 +183,22 @@ public class Account {
 	 * @param amount - Transaction's value
 	 */
 	public void transaction(BigDecimal amount) throws SQLException {
+		try (UnitOfWork work = this.store.begin()) {
+			this.balance = this.balance.add(amount);
+			// Undone relative to the current balance so later changes are kept
+			work.onRollback(() -> this.balance = this.balance.subtract(amount));
+			this.store.addToBalance(this.ID, amount, this.scale);
+			work.commit();
+		}
+	}
+
+	/**
+	 * Updates the account's balance with an amount already saved in the database
+	 * To be used after bulk writes that persisted the new balance themselves
+	 * @param amount - Transactions' net value
+	 */
+	public void loadTransaction(BigDecimal amount) {
 		this.balance = this.balance.add(amount);
-		Database.updateBalance(this.ID, this.balance);
 	}
 
 	/**
@@ -7,7 +7,9 @@ import java.util.Collection;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
-import sql.Database;
+import sql.LedgerStore;
+import sql.SQLiteStore;
+import sql.UnitOfWork;
 
 /**
  * Class to handle all assets' details and operations
@@ -15,9 +17,20 @@ import sql.Database;
  */
 public class Assets {
 
+	private final LedgerStore store;
 	private NavigableMap<Integer, Account> assets;
 
 	public Assets() {
+		this(new SQLiteStore());
+	}
+
+	/**
+	 * Creates the assets saved in the received store
+	 * @param store - Storage of the accounts' changes
+	 */
+	public Assets(LedgerStore store) {
+		if (store == null) { throw new IllegalArgumentException("Ledger store must not be null."); }
+		this.store = store;
 		this.assets = new TreeMap<Integer, Account>();
 	}
 
@@ -41,8 +54,13 @@ public class Assets {
 				return false;
 			}
 		}
-		Database.addAccount(account);
-		this.assets.put(account.getID(), account);
+		try (UnitOfWork work = this.store.begin()) {
+			this.store.addAccount(account);
+			account.setStore(this.store);
+			this.assets.put(account.getID(), account);
+			work.onRollback(() -> this.assets.remove(account.getID()));
+			work.commit();
+		}
 		return true;
 	}
 
@@ -58,6 +76,7 @@ public class Assets {
 				return false;
 			}
 		}
+		account.setStore(this.store);
 		this.assets.put(account.getID(), account);
 		return true;
 	}
@@ -69,8 +88,15 @@ public class Assets {
 	 * @return isRemoved?
 	 */
 	public boolean remAccount(Account account) throws SQLException {
-		Database.remAccount(account.getID());
-		return this.assets.remove(account.getID()) != null;
+		try (UnitOfWork work = this.store.begin()) {
+			this.store.remAccount(account.getID());
+			Account removed = this.assets.remove(account.getID());
+			if (removed != null) {
+				work.onRollback(() -> this.assets.put(removed.getID(), removed));
+			}
+			work.commit();
+			return removed != null;
+		}
 	}
 
 	/**
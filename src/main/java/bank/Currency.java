@@ -10,23 +10,26 @@ public enum Currency {
 	// When altering the Currency's code never re-order the currencies since their ID
 	// is order dependant.
 	// To add new currencies add them at the end of the list
-	Euro('€'),
-	Dollar('$'),
-	Pound('£'),
-	Yen('¥'),
-	Yuan('¥'),
-	Rupee('₹'),
-	Won('₩'),
-	Ruble('₽');
+	Euro('€', 2),
+	Dollar('$', 2),
+	Pound('£', 2),
+	Yen('¥', 0),
+	Yuan('¥', 2),
+	Rupee('₹', 2),
+	Won('₩', 0),
+	Ruble('₽', 2);
 
 	private final char SIGN;
+	private final int SCALE;
 
 	/**
 	 * Builds the Currency enum with its sign
 	 * @param sign - Currency Sign
+	 * @param scale - Number of decimal places of the currency's minor unit
 	 */
-	Currency(char sign) {
+	Currency(char sign, int scale) {
 		this.SIGN = sign;
+		this.SCALE = scale;
 	}
 
 	/**
@@ -37,6 +40,14 @@ public enum Currency {
 		return this.SIGN;
 	}
 
+	/**
+	 * Returns the number of decimal places of the currency's minor unit
+	 * @return SCALE
+	 */
+	public int getScale() {
+		return this.SCALE;
+	}
+
 	/**
 	 * Returns the currency's internal id
 	 * @return ID
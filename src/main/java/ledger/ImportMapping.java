@@ -0,0 +1,243 @@
+package ledger;
+
+/**
+ * Describes how a bank statement's CSV columns map to a transaction's details
+ * Columns are given in file order by their field names, e.g. "date,amount,name,,tag"
+ * with empty names for ignored columns
+ * @author pogegril
+ */
+public class ImportMapping {
+
+	/**
+	 * Enum listing the orders dates may be written in
+	 */
+	public enum DateOrder {
+		YMD,
+		DMY,
+		MDY;
+
+		/**
+		 * Returns the order with the received name
+		 * Not case-sensitive
+		 * @param name - Order name
+		 * @return order
+		 */
+		public static DateOrder getByName(String name) {
+			for (DateOrder order : values()) {
+				if (order.name().equalsIgnoreCase(name)) {
+					return order;
+				}
+			}
+			throw new IllegalArgumentException("Unknown date order: " + name);
+		}
+	}
+
+	private static final String DEFAULT_TAG = "Import";
+
+	private int dateColumn = -1, amountColumn = -1, nameColumn = -1, descColumn = -1, tagColumn = -1, accountColumn = -1;
+	private char delimiter = ',';
+	private char decimalSeparator = '.';
+	private boolean header = true;
+	private DateOrder dateOrder = DateOrder.DMY;
+	private String tag = DEFAULT_TAG;
+	private String account;
+
+	/**
+	 * Creates the mapping from the statement's column names
+	 * Recognized names are date, amount, name, description, tag and account
+	 * @param columns - Comma separated field names in column order
+	 */
+	public ImportMapping(String columns) {
+		if (columns == null || columns.isEmpty()) { throw new IllegalArgumentException("Column mapping must not be empty."); }
+		String[] names = columns.split(",", -1);
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i].trim().toLowerCase();
+			switch (name) {
+				case "":
+					break;
+				case "date":
+					this.dateColumn = checkUnset(this.dateColumn, name, i);
+					break;
+				case "amount":
+					this.amountColumn = checkUnset(this.amountColumn, name, i);
+					break;
+				case "name":
+					this.nameColumn = checkUnset(this.nameColumn, name, i);
+					break;
+				case "description":
+					this.descColumn = checkUnset(this.descColumn, name, i);
+					break;
+				case "tag":
+					this.tagColumn = checkUnset(this.tagColumn, name, i);
+					break;
+				case "account":
+					this.accountColumn = checkUnset(this.accountColumn, name, i);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown column name: " + name);
+			}
+		}
+		if (this.dateColumn < 0 || this.amountColumn < 0) { throw new IllegalArgumentException("Column mapping must include the date and amount."); }
+		if (this.nameColumn < 0 && this.descColumn < 0) { throw new IllegalArgumentException("Column mapping must include a name or description."); }
+	}
+
+	/**
+	 * Returns the column index after checking the field wasn't mapped already
+	 * @param column - Field's current column
+	 * @param name - Field name
+	 * @param index - New column index
+	 * @return index
+	 */
+	private static int checkUnset(int column, String name, int index) {
+		if (column >= 0) { throw new IllegalArgumentException("Column mapped twice: " + name); }
+		return index;
+	}
+
+	/**
+	 * Returns the date column's index, -1 if it's not mapped
+	 * @return column
+	 */
+	public int getDateColumn() {
+		return this.dateColumn;
+	}
+
+	/**
+	 * Returns the amount column's index, -1 if it's not mapped
+	 * @return column
+	 */
+	public int getAmountColumn() {
+		return this.amountColumn;
+	}
+
+	/**
+	 * Returns the name column's index, -1 if it's not mapped
+	 * @return column
+	 */
+	public int getNameColumn() {
+		return this.nameColumn;
+	}
+
+	/**
+	 * Returns the description column's index, -1 if it's not mapped
+	 * @return column
+	 */
+	public int getDescColumn() {
+		return this.descColumn;
+	}
+
+	/**
+	 * Returns the tag column's index, -1 if it's not mapped
+	 * @return column
+	 */
+	public int getTagColumn() {
+		return this.tagColumn;
+	}
+
+	/**
+	 * Returns the account column's index, -1 if it's not mapped
+	 * @return column
+	 */
+	public int getAccountColumn() {
+		return this.accountColumn;
+	}
+
+	/**
+	 * Returns the field delimiter
+	 * @return delimiter
+	 */
+	public char getDelimiter() {
+		return this.delimiter;
+	}
+
+	/**
+	 * Sets the field delimiter
+	 * @param delimiter - Field delimiter, can't be a quote or line break
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') { throw new IllegalArgumentException("Invalid field delimiter."); }
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Returns the amounts' decimal separator
+	 * @return decimalSeparator
+	 */
+	public char getDecimalSeparator() {
+		return this.decimalSeparator;
+	}
+
+	/**
+	 * Sets the amounts' decimal separator, the other one of '.' and ',' is taken as a thousands separator
+	 * @param decimalSeparator - '.' or ','
+	 */
+	public void setDecimalSeparator(char decimalSeparator) {
+		if (decimalSeparator != '.' && decimalSeparator != ',') { throw new IllegalArgumentException("Decimal separator must be '.' or ','."); }
+		this.decimalSeparator = decimalSeparator;
+	}
+
+	/**
+	 * Returns whether the statement starts with a header row
+	 * @return hasHeader?
+	 */
+	public boolean hasHeader() {
+		return this.header;
+	}
+
+	/**
+	 * Sets whether the statement starts with a header row to skip
+	 * @param header - hasHeader?
+	 */
+	public void setHeader(boolean header) {
+		this.header = header;
+	}
+
+	/**
+	 * Returns the order of the dates' day, month and year
+	 * @return dateOrder
+	 */
+	public DateOrder getDateOrder() {
+		return this.dateOrder;
+	}
+
+	/**
+	 * Sets the order of the dates' day, month and year
+	 * @param dateOrder - Date order
+	 */
+	public void setDateOrder(DateOrder dateOrder) {
+		if (dateOrder == null) { throw new IllegalArgumentException("Date order must not be null."); }
+		this.dateOrder = dateOrder;
+	}
+
+	/**
+	 * Returns the tag given to transactions without a tag column
+	 * @return tag
+	 */
+	public String getTag() {
+		return this.tag;
+	}
+
+	/**
+	 * Sets the tag given to transactions without a tag column
+	 * @param tag - Default tag
+	 */
+	public void setTag(String tag) {
+		if (tag == null || tag.isEmpty()) { throw new IllegalArgumentException("Default tag must not be empty."); }
+		this.tag = tag;
+	}
+
+	/**
+	 * Returns the name of the account transactions without an account column go to
+	 * @return account
+	 */
+	public String getAccount() {
+		return this.account;
+	}
+
+	/**
+	 * Sets the name of the account transactions without an account column go to
+	 * @param account - Account name
+	 */
+	public void setAccount(String account) {
+		this.account = account;
+	}
+}
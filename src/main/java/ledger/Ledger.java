@@ -3,17 +3,33 @@ package ledger;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import bank.Account;
 import bank.Assets;
 import bank.Currency;
-import sql.Database;
+import sql.LedgerStore;
+import sql.SQLiteStore;
+import sql.UnitOfWork;
 
 /**
  * Class to mantain an orderly Ledger
@@ -21,17 +37,59 @@ import sql.Database;
  */
 public class Ledger {
 
+	// Index order, newest date first and then by ID like the day records
+	private static final Comparator<Transaction> NEWEST_FIRST = Comparator.comparing(Transaction::getDate).reversed().thenComparingInt(Transaction::getID);
+
+	private final LedgerStore store;
 	private Assets assets;
 	private NavigableMap<LocalDate, ArrayList<Transaction>> ledger;
+	// Loaded transactions by their ID
+	private final Map<Integer, Transaction> records;
+	// Loaded transactions by account ID and by tag, newest first
+	private final Map<Integer, NavigableSet<Transaction>> accountRecords;
+	private final Map<String, NavigableSet<Transaction>> tagRecords;
+
+	// Memory-bounded mode, 0 keeps every month resident
+	private final int residentMonths;
+	private final LinkedHashMap<YearMonth, Boolean> resident;
+	private LocalDate firstDate, lastDate;
+	private boolean rangeLoaded;
 
 	/**
 	 * Creates a new ledger to mantain track of assets and transactions
 	 */
 	public Ledger() {
+		this(0);
+	}
+
+	/**
+	 * Creates a new ledger to mantain track of assets and transactions
+	 * Keeps at most the received number of months in memory, faulting older months in from the database when reached
+	 * @param residentMonths - Number of resident months, 0 keeps the whole history in memory
+	 */
+	public Ledger(int residentMonths) {
+		this(new SQLiteStore(), residentMonths);
+	}
+
+	/**
+	 * Creates a new ledger to mantain track of assets and transactions saved in the received store
+	 * @param store - Storage of the ledger's changes
+	 * @param residentMonths - Number of resident months, 0 keeps the whole history in memory
+	 */
+	public Ledger(LedgerStore store, int residentMonths) {
+		if (store == null) { throw new IllegalArgumentException("Ledger store must not be null."); }
+		if (residentMonths < 0) { throw new IllegalArgumentException("Number of resident months can't be negative."); }
+		this.store = store;
 		// Assets object to process banking transactions
-		this.assets = new Assets(); 
+		this.assets = new Assets(store); 
 		// TreeMap by dates containing transaction lists
 		this.ledger = new TreeMap<LocalDate, ArrayList<Transaction>>();
+		this.records = new HashMap<Integer, Transaction>();
+		this.accountRecords = new HashMap<Integer, NavigableSet<Transaction>>();
+		this.tagRecords = new HashMap<String, NavigableSet<Transaction>>();
+		this.residentMonths = residentMonths;
+		// Resident months in access order, least recently used first
+		this.resident = new LinkedHashMap<YearMonth, Boolean>(16, 0.75f, true);
 	}
 
 	/**
@@ -44,34 +102,183 @@ public class Ledger {
 
 	/**
 	 * Returns the user's ledger
+	 * A memory-bounded ledger only holds its resident months, use getDescendingRecords to reach the whole history
 	 * @return ledger
 	 */
 	public NavigableMap<LocalDate, ArrayList<Transaction>> getLedger() {
 		return this.ledger;
 	}
 
+	/**
+	 * Returns whether the ledger only keeps a limited number of months in memory
+	 * @return isBounded?
+	 */
+	public boolean isBounded() {
+		return this.residentMonths > 0;
+	}
+
+	/**
+	 * Returns the first date a memory-bounded ledger loads on startup
+	 * @return date
+	 */
+	public LocalDate getResidentStart() {
+		return YearMonth.now().minusMonths(Math.max(1, this.residentMonths) - 1).atDay(1);
+	}
+
+	/**
+	 * Returns every day's records from the newest to the oldest
+	 * A memory-bounded ledger faults each month in as the iteration reaches it,
+	 * evicting the least recently used months behind it
+	 * @return records
+	 */
+	public Iterable<ArrayList<Transaction>> getDescendingRecords() {
+		if (!isBounded()) {
+			return this.ledger.descendingMap().values();
+		}
+
+		LocalDate[] range;
+		try {
+			range = getDateRange();
+		} catch (SQLException e) {
+			throw new IllegalStateException("Failed to read the ledger's date range.", e);
+		}
+		if (range == null) {
+			return Collections.emptyList();
+		}
+		YearMonth first = YearMonth.from(range[0]);
+		YearMonth last = YearMonth.from(range[1]);
+
+		return () -> new Iterator<ArrayList<Transaction>>() {
+			private YearMonth month = last;
+			private Iterator<ArrayList<Transaction>> days = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!this.days.hasNext()) {
+					if (this.month.isBefore(first)) {
+						return false;
+					}
+					try {
+						faultIn(this.month, this.month);
+					} catch (SQLException e) {
+						throw new IllegalStateException("Failed to load the records of " + this.month + ".", e);
+					}
+					// Copies the month's days so later evictions don't change them mid-iteration
+					this.days = new ArrayList<ArrayList<Transaction>>(getMonth(this.month).descendingMap().values()).iterator();
+					this.month = this.month.minusMonths(1);
+				}
+				return true;
+			}
+
+			@Override
+			public ArrayList<Transaction> next() {
+				if (!hasNext()) { throw new NoSuchElementException(); }
+				return this.days.next();
+			}
+		};
+	}
+
+	/**
+	 * Passes every transaction between the received dates to the consumer
+	 * A memory-bounded ledger streams them from its store in the store's order instead of faulting months in,
+	 * so walking the whole history doesn't evict the resident months
+	 * @param from - First date, null for the oldest
+	 * @param to - Last date, null for the newest
+	 * @param consumer - Receives each transaction
+	 */
+	public void forEachTransaction(LocalDate from, LocalDate to, Consumer<Transaction> consumer) throws SQLException {
+		if (!isBounded()) {
+			NavigableMap<LocalDate, ArrayList<Transaction>> records = this.ledger;
+			if (from != null) {
+				records = records.tailMap(from, true);
+			}
+			if (to != null) {
+				records = records.headMap(to, true);
+			}
+			for (ArrayList<Transaction> dayRecords : records.values()) {
+				dayRecords.forEach(consumer);
+			}
+			return;
+		}
+
+		LocalDate[] range = getDateRange();
+		if (range == null) {
+			return;
+		}
+		this.store.loadTransactions(from == null ? range[0] : from, to == null ? range[1] : to, consumer);
+	}
+
+	/**
+	 * Marks every month since the received date as resident
+	 * To be called after loading all of the database's transactions since that date
+	 * @param date - First loaded date
+	 */
+	public void markLoadedSince(LocalDate date) {
+		if (!isBounded()) {
+			return;
+		}
+		YearMonth last = YearMonth.now();
+		if (!this.ledger.isEmpty() && YearMonth.from(this.ledger.lastKey()).isAfter(last)) {
+			last = YearMonth.from(this.ledger.lastKey());
+		}
+		for (YearMonth month = YearMonth.from(date); !month.isAfter(last); month = month.plusMonths(1)) {
+			this.resident.put(month, Boolean.TRUE);
+		}
+		evict(last, last);
+	}
+
+	/**
+	 * Returns each account's saved balance along with the amounts it should add up to, read from the ledger's store
+	 * @return balances - { Saved balance, Opening balance, Transactions' sum } by account ID
+	 */
+	public Map<Integer, BigDecimal[]> getSavedBalances() throws SQLException {
+		return this.store.getReconciliation();
+	}
+
+	/**
+	 * Repairs the balances of the received accounts as a single operation
+	 * Nothing changes if any of them fails to save
+	 * @param balances - Expected balance by account
+	 */
+	public void repairBalances(Map<Account, BigDecimal> balances) throws SQLException {
+		try (UnitOfWork work = this.store.begin()) {
+			for (Map.Entry<Account, BigDecimal> balance : balances.entrySet()) {
+				balance.getKey().setBalance(balance.getValue());
+			}
+			work.commit();
+		}
+	}
+
 	/**
 	 * Removes an account from the ledger's assets
 	 * Removes all transactions with this ID
+	 * The database deletes them with a single statement and only the days holding them are visited
 	 * @param account - Account to remove
 	 */
 	public void removeAccount(Account account) throws SQLException {
-		// Filter transactions to remove
-		List<Transaction> toRemove = new ArrayList<>();
-		for (ArrayList<Transaction> dayRecords : this.ledger.values()) {
-			for (Transaction transaction : dayRecords) {
-				if (transaction.getAccountID() == account.getID()) {
-					toRemove.add(transaction);
+		try (UnitOfWork work = this.store.begin()) {
+			// Deletes the account along with all of its database transactions
+			this.assets.remAccount(account);
+
+			Set<Transaction> removed = this.accountRecords.remove(account.getID());
+			if (removed != null) {
+				Set<LocalDate> dates = new HashSet<LocalDate>();
+				for (Transaction transaction : removed) {
+					this.records.remove(transaction.getID());
+					removeFromIndex(this.tagRecords, transaction.getTag(), transaction);
+					dates.add(transaction.getDate());
+				}
+				for (LocalDate date : dates) {
+					ArrayList<Transaction> dateRecords = this.ledger.get(date);
+					dateRecords.removeIf(transaction -> transaction.getAccountID() == account.getID());
+					if (dateRecords.isEmpty()) {
+						this.ledger.remove(date);
+					}
 				}
+				work.onRollback(() -> removed.forEach(this::loadTransaction));
 			}
+			work.commit();
 		}
-
-		// Remove transactons from account to be removed
-		for (Transaction transaction : toRemove) {
-			removeTransaction(transaction);
-		}
-
-		this.assets.remAccount(account);
 	}
 
 
@@ -82,22 +289,90 @@ public class Ledger {
 	 */
 	public boolean addTransaction(Transaction transaction) throws SQLException {
 		LocalDate date = transaction.getDate();
-		this.ledger.computeIfAbsent(date, newRecords -> new ArrayList<Transaction>());
-
-		ArrayList<Transaction> dateRecords = this.ledger.get(date);
-		if (dateRecords.contains(transaction)) {
+		faultIn(date, date);
+		if (isLoaded(transaction)) {
 			return false;
 		}
-
-		Database.addTransaction(transaction);
-		dateRecords.add(transaction);
+		ArrayList<Transaction> dateRecords = this.ledger.computeIfAbsent(date, newRecords -> new ArrayList<Transaction>());
 
 		Account account = this.assets.getAccountByID(transaction.getAccountID());
-		account.transaction(transaction.getAmount());
+		try (UnitOfWork work = this.store.begin()) {
+			this.store.addTransaction(transaction, account.getScale());
+			dateRecords.add(transaction);
+			index(transaction);
+			work.onRollback(() -> unloadTransaction(transaction));
 
+			account.transaction(transaction.getAmount());
+			work.commit();
+		}
+		extendRange(date);
 		return true;
 	}
 
+	/**
+	 * Adds all of the new transactions to the ledger skipping any duplicates
+	 * Transactions are saved in a single batch and each account's balance is updated once
+	 * @param transactions - New transactions to track
+	 * @return added - Number of transactions added
+	 */
+	public int addTransactions(Collection<Transaction> transactions) throws SQLException {
+		Set<Transaction> toAdd = new LinkedHashSet<Transaction>();
+		Map<Account, BigDecimal> deltas = new HashMap<Account, BigDecimal>();
+		for (Transaction transaction : transactions) {
+			faultIn(transaction.getDate(), transaction.getDate());
+			if (isLoaded(transaction) || !toAdd.add(transaction)) {
+				continue;
+			}
+
+			Account account = this.assets.getAccountByID(transaction.getAccountID());
+			if (account == null) {
+				throw new IllegalArgumentException("Transaction's account doesn't exist.");
+			}
+			deltas.merge(account, transaction.getAmount(), BigDecimal::add);
+		}
+
+		if (toAdd.isEmpty()) {
+			return 0;
+		}
+
+		try (UnitOfWork work = this.store.begin()) {
+			this.store.addTransactions(toAdd, deltas);
+			for (Transaction transaction : toAdd) {
+				this.ledger.computeIfAbsent(transaction.getDate(), newRecords -> new ArrayList<Transaction>()).add(transaction);
+				index(transaction);
+				work.onRollback(() -> unloadTransaction(transaction));
+			}
+			for (Map.Entry<Account, BigDecimal> delta : deltas.entrySet()) {
+				Account account = delta.getKey();
+				BigDecimal amount = delta.getValue();
+				account.loadTransaction(amount);
+				work.onRollback(() -> account.loadTransaction(amount.negate()));
+			}
+			work.commit();
+		}
+		for (Transaction transaction : toAdd) {
+			extendRange(transaction.getDate());
+		}
+		return toAdd.size();
+	}
+
+	/**
+	 * Replaces a transaction with its edited version as a single operation
+	 * Nothing changes if either the addition or the removal fails
+	 * @param transaction - Transaction to replace
+	 * @param edited - Transaction with the edited details
+	 * @return isEdited?
+	 */
+	public boolean editTransaction(Transaction transaction, Transaction edited) throws SQLException {
+		try (UnitOfWork work = this.store.begin()) {
+			if (!addTransaction(edited) || !removeTransaction(transaction)) {
+				return false;
+			}
+			work.commit();
+			return true;
+		}
+	}
+
 	/**
 	 * Loads an account into the ledger
 	 * To be used specifically to load an existing account since it doesnt update the assets balance
@@ -105,37 +380,198 @@ public class Ledger {
 	 * @return isAdded?
 	 */
 	public boolean loadTransaction(Transaction transaction) {
-		LocalDate date = transaction.getDate();
-		this.ledger.computeIfAbsent(date, newRecords -> new ArrayList<Transaction>());
-
-		ArrayList<Transaction> dateRecords = this.ledger.get(date);
-		if (dateRecords.contains(transaction)) {
+		if (isLoaded(transaction)) {
 			return false;
 		}
-		dateRecords.add(transaction);
+		this.ledger.computeIfAbsent(transaction.getDate(), newRecords -> new ArrayList<Transaction>()).add(transaction);
+		index(transaction);
 		return true;
 	}
 
+	/**
+	 * Loads existing day records into the ledger appending them to any records of the same day
+	 * To be used specifically to load database records since it skips the duplicate check
+	 * @param records - Transactions by date
+	 */
+	public void loadRecords(NavigableMap<LocalDate, ArrayList<Transaction>> records) {
+		for (ArrayList<Transaction> dayRecords : records.values()) {
+			for (Transaction transaction : dayRecords) {
+				index(transaction);
+			}
+		}
+		if (this.ledger.isEmpty()) {
+			// Sorted maps are copied into an empty TreeMap in linear time
+			this.ledger.putAll(records);
+			return;
+		}
+		for (Map.Entry<LocalDate, ArrayList<Transaction>> day : records.entrySet()) {
+			ArrayList<Transaction> dateRecords = this.ledger.get(day.getKey());
+			if (dateRecords == null) {
+				this.ledger.put(day.getKey(), day.getValue());
+			} else {
+				dateRecords.addAll(day.getValue());
+			}
+		}
+	}
+
 	/**
 	 * Removes the transaction from the ledger
 	 * @param transaction - Transaction to remove
 	 * @return isRemoved?
 	 */
 	public boolean removeTransaction(Transaction transaction) throws SQLException {
-		Database.remTransaction(transaction.getID());
-		ArrayList<Transaction> dateRecords = this.ledger.get(transaction.getDate());
-		if (dateRecords != null && dateRecords.remove(transaction)) {
-			// Cleans dateRecords if this was the last transaction present
-			if (dateRecords.isEmpty()) {
-				this.ledger.remove(transaction.getDate());
+		faultIn(transaction.getDate(), transaction.getDate());
+		if (!isLoaded(transaction)) {
+			return false;
+		}
+		Account account = this.assets.getAccountByID(transaction.getAccountID());
+		try (UnitOfWork work = this.store.begin()) {
+			this.store.remTransaction(transaction, account.getScale());
+			if (!unloadTransaction(transaction)) {
+				return false;
 			}
-			Account account = this.assets.getAccountByID(transaction.getAccountID());
+			work.onRollback(() -> loadTransaction(transaction));
+
 			BigDecimal revertTransaction = transaction.getAmount().negate();
 			account.transaction(revertTransaction);
-			Database.updateBalance(account.getID(), account.getBalance());
+			work.commit();
 			return true;
 		}
-		return false;
+	}
+
+	/**
+	 * Removes the transaction from its day's records without updating the database
+	 * @param transaction - Transaction to remove
+	 * @return isRemoved?
+	 */
+	private boolean unloadTransaction(Transaction transaction) {
+		// Evicted transactions come back as new objects when their month is faulted in again, the index holds the loaded one
+		Transaction removed = this.records.get(transaction.getID());
+		ArrayList<Transaction> dateRecords = removed == null ? null : this.ledger.get(removed.getDate());
+		if (dateRecords == null || !dateRecords.remove(removed)) {
+			return false;
+		}
+		unindex(removed);
+		// Cleans dateRecords if this was the last transaction present
+		if (dateRecords.isEmpty()) {
+			this.ledger.remove(transaction.getDate());
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the loaded transaction with the received ID
+	 * Returns null if it's not loaded
+	 * @param id - Transaction ID
+	 * @return transaction
+	 */
+	public Transaction getTransaction(int id) {
+		return this.records.get(id);
+	}
+
+	/**
+	 * Returns whether the transaction is already loaded
+	 * New transactions don't have an ID until they're saved so they're never loaded
+	 * @param transaction - Transaction to check
+	 * @return isLoaded?
+	 */
+	private boolean isLoaded(Transaction transaction) {
+		return transaction.getID() != 0 && this.records.containsKey(transaction.getID());
+	}
+
+	/**
+	 * Returns the account's transactions from the newest to the oldest
+	 * Read straight from the account index so the cost depends on the number of results,
+	 * a memory-bounded ledger streams them from its store instead since it only indexes its resident months
+	 * @param id - Account ID
+	 * @return transactions
+	 */
+	public Collection<Transaction> getRecordsByAccount(int id) {
+		if (isBounded()) {
+			return findRecords(transaction -> transaction.getAccountID() == id);
+		}
+		NavigableSet<Transaction> records = this.accountRecords.get(id);
+		return records == null ? Collections.emptySet() : Collections.unmodifiableNavigableSet(records);
+	}
+
+	/**
+	 * Returns the transactions with the tag from the newest to the oldest
+	 * Read straight from the tag index so the cost depends on the number of results,
+	 * a memory-bounded ledger streams them from its store instead since it only indexes its resident months
+	 * @param tag - Transaction tag
+	 * @return transactions
+	 */
+	public Collection<Transaction> getRecordsByTag(String tag) {
+		if (isBounded()) {
+			return findRecords(transaction -> transaction.getTag().equals(tag));
+		}
+		NavigableSet<Transaction> records = this.tagRecords.get(tag);
+		return records == null ? Collections.emptySet() : Collections.unmodifiableNavigableSet(records);
+	}
+
+	/**
+	 * Returns every recorded transaction passing the filter from the newest to the oldest
+	 * @param filter - Transaction filter
+	 * @return transactions
+	 */
+	private Collection<Transaction> findRecords(Predicate<Transaction> filter) {
+		NavigableSet<Transaction> found = new TreeSet<Transaction>(NEWEST_FIRST);
+		try {
+			forEachTransaction(null, null, transaction -> {
+				if (filter.test(transaction)) {
+					found.add(transaction);
+				}
+			});
+		} catch (SQLException e) {
+			throw new IllegalStateException("Failed to read the ledger's records.", e);
+		}
+		return found;
+	}
+
+	/**
+	 * Adds a loaded transaction to the ID, account and tag indexes
+	 * @param transaction - Loaded transaction
+	 */
+	private void index(Transaction transaction) {
+		this.records.put(transaction.getID(), transaction);
+		this.accountRecords.computeIfAbsent(transaction.getAccountID(), newRecords -> new TreeSet<Transaction>(NEWEST_FIRST)).add(transaction);
+		this.tagRecords.computeIfAbsent(transaction.getTag(), newRecords -> new TreeSet<Transaction>(NEWEST_FIRST)).add(transaction);
+	}
+
+	/**
+	 * Removes an unloaded transaction from the ID, account and tag indexes
+	 * @param transaction - Unloaded transaction
+	 */
+	private void unindex(Transaction transaction) {
+		this.records.remove(transaction.getID());
+		removeFromIndex(this.accountRecords, transaction.getAccountID(), transaction);
+		removeFromIndex(this.tagRecords, transaction.getTag(), transaction);
+	}
+
+	/**
+	 * Removes the transaction from the index's entry, dropping the entry once it's empty
+	 * @param index - Account or tag index
+	 * @param key - Transaction's key in the index
+	 * @param transaction - Unloaded transaction
+	 */
+	private static <K> void removeFromIndex(Map<K, NavigableSet<Transaction>> index, K key, Transaction transaction) {
+		NavigableSet<Transaction> records = index.get(key);
+		if (records != null && records.remove(transaction) && records.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	/**
+	 * Unloads every transaction of the days
+	 * @param days - Days to clear
+	 */
+	private void clearDays(NavigableMap<LocalDate, ArrayList<Transaction>> days) {
+		for (ArrayList<Transaction> dayRecords : days.values()) {
+			for (Transaction transaction : dayRecords) {
+				unindex(transaction);
+			}
+		}
+		days.clear();
 	}
 
 	/**
@@ -143,6 +579,7 @@ public class Ledger {
 	 * @param date - Date of requested transactions
 	 */
 	public ArrayList<Transaction> getRecordsByDay(LocalDate date) {
+		faultInQuietly(date, date);
 		return this.ledger.get(date);
 	}
 
@@ -153,6 +590,7 @@ public class Ledger {
 	public NavigableMap<LocalDate, ArrayList<Transaction>> getRecordsByMonths(long months) {
 		LocalDate currentDate = LocalDate.now();
 		LocalDate startDate = currentDate.minusMonths(months);
+		faultInQuietly(startDate, currentDate);
 		return this.ledger.subMap(startDate, true, currentDate, true);
 	}
 
@@ -165,6 +603,7 @@ public class Ledger {
 		Arrays.fill(assetsFlow, BigDecimal.ZERO);
 
 		LocalDate currentDate = LocalDate.now();
+		faultInQuietly(date, currentDate);
 		NavigableMap<LocalDate, ArrayList<Transaction>> transactions = this.ledger.subMap(date, true, currentDate, true);
 
 		for (ArrayList<Transaction> dayRecords : transactions.values()) {
@@ -175,4 +614,120 @@ public class Ledger {
 		}
 		return assetsFlow;
 	}
+
+	/**
+	 * Returns the ledger's days within the month
+	 * @param month - Month of the records
+	 */
+	private NavigableMap<LocalDate, ArrayList<Transaction>> getMonth(YearMonth month) {
+		return this.ledger.subMap(month.atDay(1), true, month.atEndOfMonth(), true);
+	}
+
+	/**
+	 * Makes every month between the received dates resident loading the missing ones from the database
+	 * Then evicts the least recently used months outside the range until the ledger is back to its limit,
+	 * ranges longer than the limit stay resident until the next fault
+	 * @param from - First date of the range
+	 * @param to - Last date of the range
+	 */
+	private void faultIn(LocalDate from, LocalDate to) throws SQLException {
+		if (isBounded()) {
+			faultIn(YearMonth.from(from), YearMonth.from(to));
+		}
+	}
+
+	/**
+	 * Makes every month in the range resident
+	 * Months before the oldest recorded transaction are never loaded
+	 * @param first - First month of the range
+	 * @param last - Last month of the range
+	 */
+	private void faultIn(YearMonth first, YearMonth last) throws SQLException {
+		LocalDate[] range = getDateRange();
+		if (range == null) {
+			return;
+		}
+		YearMonth oldest = YearMonth.from(range[0]);
+		for (YearMonth month = last; !month.isBefore(first) && !month.isBefore(oldest); month = month.minusMonths(1)) {
+			// Lookups refresh the month's place in the access order
+			if (this.resident.get(month) != null) {
+				continue;
+			}
+			NavigableMap<LocalDate, ArrayList<Transaction>> days = getMonth(month);
+			clearDays(days);
+			try {
+				this.store.loadTransactions(month.atDay(1), month.atEndOfMonth(), this::loadTransaction);
+			} catch (SQLException e) {
+				// Partially loaded months are left out
+				clearDays(days);
+				throw e;
+			}
+			this.resident.put(month, Boolean.TRUE);
+		}
+		evict(first, last);
+	}
+
+	/**
+	 * Makes every month between the received dates resident
+	 * Faulting failures are printed and the ledger is left with the months it had
+	 * @param from - First date of the range
+	 * @param to - Last date of the range
+	 */
+	private void faultInQuietly(LocalDate from, LocalDate to) {
+		try {
+			faultIn(from, to);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Drops the least recently used months outside the range until the ledger is back to its limit
+	 * Every change is already saved so evicted months can be loaded again as they were
+	 * @param first - First month of the range to keep
+	 * @param last - Last month of the range to keep
+	 */
+	private void evict(YearMonth first, YearMonth last) {
+		Iterator<YearMonth> months = this.resident.keySet().iterator();
+		while (this.resident.size() > this.residentMonths && months.hasNext()) {
+			YearMonth month = months.next();
+			if (month.isBefore(first) || month.isAfter(last)) {
+				months.remove();
+				clearDays(getMonth(month));
+			}
+		}
+	}
+
+	/**
+	 * Returns the dates of the oldest and newest recorded transactions
+	 * Returns null if there are no recorded transactions
+	 * @return range
+	 */
+	private LocalDate[] getDateRange() throws SQLException {
+		if (!this.rangeLoaded) {
+			LocalDate[] range = this.store.getDateRange();
+			if (range != null) {
+				this.firstDate = range[0];
+				this.lastDate = range[1];
+			}
+			this.rangeLoaded = true;
+		}
+		return this.firstDate == null ? null : new LocalDate[] { this.firstDate, this.lastDate };
+	}
+
+	/**
+	 * Extends the known date range of a memory-bounded ledger to a new transaction's date
+	 * @param date - Transaction's date
+	 */
+	private void extendRange(LocalDate date) {
+		if (!isBounded() || !this.rangeLoaded) {
+			return;
+		}
+		if (this.firstDate == null || date.isBefore(this.firstDate)) {
+			this.firstDate = date;
+		}
+		if (this.lastDate == null || date.isAfter(this.lastDate)) {
+			this.lastDate = date;
+		}
+	}
 }
@@ -0,0 +1,377 @@
+package ledger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import bank.Account;
+
+/**
+ * Streams the ledger's transactions into a CSV or JSON Lines file
+ * Rows are encoded straight into a reusable byte buffer that's written through a file channel once full,
+ * so memory use stays constant regardless of the number of exported rows
+ * @author pogegril
+ */
+public class LedgerExporter {
+
+	/**
+	 * Enum listing the supported export formats
+	 */
+	public enum Format {
+		CSV,
+		JSONL;
+
+		/**
+		 * Returns the format with the received name
+		 * Not case-sensitive
+		 * @param name - Format name
+		 * @return format
+		 */
+		public static Format getByName(String name) {
+			for (Format format : values()) {
+				if (format.name().equalsIgnoreCase(name)) {
+					return format;
+				}
+			}
+			throw new IllegalArgumentException("Unknown export format: " + name);
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 18;
+	// Largest UTF-8 encoding of a single character
+	private static final int MAX_CHAR_BYTES = 4;
+	private static final String CSV_HEADER = "id,date,account,name,description,tag,amount\n";
+	private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+	private final Ledger ledger;
+	private final Format format;
+	private LocalDate from, to;
+	private int accountID = -1;
+	private String tag;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private FileChannel channel;
+	private int exported;
+
+	/**
+	 * Creates an exporter for the ledger's transactions
+	 * @param ledger - User ledger
+	 * @param format - Output format
+	 */
+	public LedgerExporter(Ledger ledger, Format format) {
+		if (ledger == null || format == null) { throw new IllegalArgumentException("Ledger and format must not be null."); }
+		this.ledger = ledger;
+		this.format = format;
+	}
+
+	/**
+	 * Only exports transactions between the received dates
+	 * @param from - First date, null for the oldest
+	 * @param to - Last date, null for the newest
+	 */
+	public void setDateRange(LocalDate from, LocalDate to) {
+		if (from != null && to != null && from.isAfter(to)) { throw new IllegalArgumentException("Export range starts after it ends."); }
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Only exports transactions from the received account
+	 * @param accountID - Account ID, -1 for every account
+	 */
+	public void setAccount(int accountID) {
+		this.accountID = accountID;
+	}
+
+	/**
+	 * Only exports transactions with the received tag
+	 * Not case-sensitive
+	 * @param tag - Tag, null for every tag
+	 */
+	public void setTag(String tag) {
+		this.tag = tag;
+	}
+
+	/**
+	 * Writes the matching transactions into the file, replacing it if it exists
+	 * @param file - Output file
+	 * @return exported - Number of exported transactions
+	 */
+	public int exportTo(Path file) throws IOException, SQLException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.channel = channel;
+			this.buffer.clear();
+			this.exported = 0;
+			if (this.format == Format.CSV) {
+				writeAscii(CSV_HEADER);
+			}
+
+			try {
+				this.ledger.forEachTransaction(this.from, this.to, transaction -> {
+					if (!matches(transaction)) {
+						return;
+					}
+					try {
+						if (this.format == Format.CSV) {
+							writeCSV(transaction);
+						} else {
+							writeJSON(transaction);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					this.exported++;
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			drain();
+			return this.exported;
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Returns whether the transaction passes the account and tag filters
+	 * @param transaction - Transaction to check
+	 * @return isMatch?
+	 */
+	private boolean matches(Transaction transaction) {
+		if (this.accountID >= 0 && transaction.getAccountID() != this.accountID) {
+			return false;
+		}
+		return this.tag == null || transaction.getTag().equalsIgnoreCase(this.tag);
+	}
+
+	/**
+	 * Returns the name of the transaction's account, empty if it's not found
+	 * @param transaction - Exported transaction
+	 * @return name
+	 */
+	private String getAccountName(Transaction transaction) {
+		Account account = this.ledger.getAssets().getAccountByID(transaction.getAccountID());
+		return account == null ? "" : account.getName();
+	}
+
+	/**
+	 * Writes the transaction as a CSV row
+	 * @param transaction - Exported transaction
+	 */
+	private void writeCSV(Transaction transaction) throws IOException {
+		writeInt(transaction.getID());
+		writeByte(',');
+		writeDate(transaction.getDate());
+		writeByte(',');
+		writeCSVField(getAccountName(transaction));
+		writeByte(',');
+		writeCSVField(transaction.getName());
+		writeByte(',');
+		writeCSVField(transaction.getDesc());
+		writeByte(',');
+		writeCSVField(transaction.getTag());
+		writeByte(',');
+		writeAscii(transaction.getAmount().toPlainString());
+		writeByte('\n');
+	}
+
+	/**
+	 * Writes the transaction as a JSON object on its own line
+	 * @param transaction - Exported transaction
+	 */
+	private void writeJSON(Transaction transaction) throws IOException {
+		writeAscii("{\"id\":");
+		writeInt(transaction.getID());
+		writeAscii(",\"date\":\"");
+		writeDate(transaction.getDate());
+		writeAscii("\",\"account\":");
+		writeJSONString(getAccountName(transaction));
+		writeAscii(",\"name\":");
+		writeJSONString(transaction.getName());
+		writeAscii(",\"description\":");
+		writeJSONString(transaction.getDesc());
+		writeAscii(",\"tag\":");
+		writeJSONString(transaction.getTag());
+		// Amounts are written as strings so readers don't round them into doubles
+		writeAscii(",\"amount\":\"");
+		writeAscii(transaction.getAmount().toPlainString());
+		writeAscii("\"}\n");
+	}
+
+	/**
+	 * Writes a CSV field, quoted only if it holds a delimiter, quote or line break
+	 * @param value - Field value, null is written as an empty field
+	 */
+	private void writeCSVField(String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			writeChars(value);
+			return;
+		}
+
+		writeByte('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				writeByte('"');
+			}
+			i += writeChar(value, i) - 1;
+		}
+		writeByte('"');
+	}
+
+	/**
+	 * Writes a quoted JSON string
+	 * @param value - String value, null is written as null
+	 */
+	private void writeJSONString(String value) throws IOException {
+		if (value == null) {
+			writeAscii("null");
+			return;
+		}
+		writeByte('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				writeByte('\\');
+				writeByte(c);
+			} else if (c == '\n') {
+				writeAscii("\\n");
+			} else if (c == '\r') {
+				writeAscii("\\r");
+			} else if (c == '\t') {
+				writeAscii("\\t");
+			} else if (c < 0x20) {
+				writeAscii("\\u00");
+				writeByte(HEX[c >> 4]);
+				writeByte(HEX[c & 0xF]);
+			} else {
+				i += writeChar(value, i) - 1;
+			}
+		}
+		writeByte('"');
+	}
+
+	/**
+	 * Writes a date as YYYY-MM-DD
+	 * @param date - Date to write
+	 */
+	private void writeDate(LocalDate date) throws IOException {
+		ensure(10);
+		int year = date.getYear();
+		if (year < 1000 || year > 9999) {
+			writeAscii(date.toString());
+			return;
+		}
+		this.buffer.put((byte) ('0' + year / 1000)).put((byte) ('0' + year / 100 % 10)).put((byte) ('0' + year / 10 % 10)).put((byte) ('0' + year % 10));
+		this.buffer.put((byte) '-').put((byte) ('0' + date.getMonthValue() / 10)).put((byte) ('0' + date.getMonthValue() % 10));
+		this.buffer.put((byte) '-').put((byte) ('0' + date.getDayOfMonth() / 10)).put((byte) ('0' + date.getDayOfMonth() % 10));
+	}
+
+	/**
+	 * Writes a non-negative integer's digits
+	 * @param value - Integer to write
+	 */
+	private void writeInt(int value) throws IOException {
+		ensure(10);
+		int divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			this.buffer.put((byte) ('0' + value / divisor % 10));
+		}
+	}
+
+	/**
+	 * Writes a string known to only hold ASCII characters
+	 * @param value - ASCII string
+	 */
+	private void writeAscii(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			writeByte(value.charAt(i));
+		}
+	}
+
+	/**
+	 * Writes a string's characters as UTF-8
+	 * @param value - String to write
+	 */
+	private void writeChars(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			i += writeChar(value, i) - 1;
+		}
+	}
+
+	/**
+	 * Writes the character at the index as UTF-8
+	 * A high surrogate is written together with the low surrogate following it
+	 * @param value - String holding the character
+	 * @param index - Character's index
+	 * @return consumed - Number of chars written
+	 */
+	private int writeChar(String value, int index) throws IOException {
+		ensure(MAX_CHAR_BYTES);
+		char c = value.charAt(index);
+		if (c < 0x80) {
+			this.buffer.put((byte) c);
+		} else if (c < 0x800) {
+			this.buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+		} else if (Character.isSurrogate(c)) {
+			if (Character.isHighSurrogate(c) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1))) {
+				int code = Character.toCodePoint(c, value.charAt(index + 1));
+				this.buffer.put((byte) (0xF0 | code >> 18)).put((byte) (0x80 | code >> 12 & 0x3F));
+				this.buffer.put((byte) (0x80 | code >> 6 & 0x3F)).put((byte) (0x80 | code & 0x3F));
+				return 2;
+			} else {
+				// Unpaired surrogates are replaced like the standard encoder does
+				this.buffer.put((byte) '?');
+			}
+		} else {
+			this.buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+		}
+		return 1;
+	}
+
+	/**
+	 * Writes a single byte
+	 * @param value - Byte to write
+	 */
+	private void writeByte(int value) throws IOException {
+		ensure(1);
+		this.buffer.put((byte) value);
+	}
+
+	/**
+	 * Makes room in the buffer for the received number of bytes
+	 * @param bytes - Bytes about to be written
+	 */
+	private void ensure(int bytes) throws IOException {
+		if (this.buffer.remaining() < bytes) {
+			drain();
+		}
+	}
+
+	/**
+	 * Writes the buffered bytes to the file
+	 */
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+}
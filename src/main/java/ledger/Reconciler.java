@@ -0,0 +1,189 @@
+package ledger;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import bank.Account;
+
+/**
+ * Checks that every account's balance matches its opening balance plus the sum of its transactions
+ * The ledger's store sums its transactions while the loaded days are summed in parallel,
+ * drifted balances can then be repaired as a single operation
+ * Balances replaced by the user through Account.setBalance keep the opening balance, so the edits
+ * are reported as drift like any other and a repair sets them back to what the transactions add up to
+ * Drift from before opening balances were saved can't be told apart from them and was taken as the opening balance
+ * Must not run alongside changes to the ledger
+ * @author pogegril
+ */
+public class Reconciler {
+
+	/**
+	 * Account whose balances don't add up
+	 */
+	public static class Drift {
+		private final Account account;
+		private final BigDecimal saved, loaded, expected;
+		private final BigDecimal savedSum, loadedSum;
+
+		private Drift(Account account, BigDecimal saved, BigDecimal loaded, BigDecimal expected, BigDecimal savedSum, BigDecimal loadedSum) {
+			this.account = account;
+			this.saved = saved;
+			this.loaded = loaded;
+			this.expected = expected;
+			this.savedSum = savedSum;
+			this.loadedSum = loadedSum;
+		}
+
+		/**
+		 * Returns the drifted account
+		 * @return account
+		 */
+		public Account getAccount() {
+			return this.account;
+		}
+
+		/**
+		 * Returns the balance the account should have, its opening balance plus its saved transactions
+		 * @return expected
+		 */
+		public BigDecimal getExpected() {
+			return this.expected;
+		}
+
+		/**
+		 * Returns whether the saved or loaded balance differs from the expected one
+		 * Repairing the account sets both to the expected balance
+		 * @return isBalanceDrifted?
+		 */
+		public boolean isBalanceDrifted() {
+			return this.saved.compareTo(this.expected) != 0 || this.loaded.compareTo(this.expected) != 0;
+		}
+
+		/**
+		 * Returns whether the loaded transactions add up to a different sum than the saved ones
+		 * Only checked when the whole history is loaded, repairing balances doesn't fix it
+		 * @return isTransactionsDrifted?
+		 */
+		public boolean isTransactionsDrifted() {
+			return this.loadedSum != null && this.loadedSum.compareTo(this.savedSum) != 0;
+		}
+
+		@Override
+		public String toString() {
+			String report = this.account.getName() + ": saved " + this.saved.toPlainString() + ", loaded " + this.loaded.toPlainString()
+					+ ", expected " + this.expected.toPlainString();
+			if (isTransactionsDrifted()) {
+				report += ", loaded transactions " + this.loadedSum.toPlainString() + " against saved " + this.savedSum.toPlainString();
+			}
+			return report;
+		}
+	}
+
+	// Days summed by a single task before it stops splitting
+	private static final int DAYS_PER_TASK = 256;
+
+	private final Ledger ledger;
+
+	/**
+	 * Creates a reconciler for the ledger's accounts
+	 * @param ledger - User ledger
+	 */
+	public Reconciler(Ledger ledger) {
+		if (ledger == null) { throw new IllegalArgumentException("Ledger must not be null."); }
+		this.ledger = ledger;
+	}
+
+	/**
+	 * Returns every account whose balances or transactions don't add up
+	 * A memory-bounded ledger only has its balances checked since its history isn't all loaded
+	 * @return drifts
+	 */
+	public List<Drift> check() throws SQLException {
+		ForkJoinTask<Map<Integer, BigDecimal>> loaded = null;
+		if (!this.ledger.isBounded()) {
+			List<ArrayList<Transaction>> days = new ArrayList<ArrayList<Transaction>>(this.ledger.getLedger().values());
+			loaded = ForkJoinPool.commonPool().submit(new SumTask(days, 0, days.size()));
+		}
+		// The store sums its side on this thread while the pool sums the loaded days
+		Map<Integer, BigDecimal[]> balances = this.ledger.getSavedBalances();
+		Map<Integer, BigDecimal> loadedSums = loaded == null ? null : loaded.join();
+
+		List<Drift> drifts = new ArrayList<Drift>();
+		for (Account account : this.ledger.getAssets().getAssets()) {
+			BigDecimal[] saved = balances.get(account.getID());
+			if (saved == null) {
+				// Accounts whose write failed are reverted by the write failure handler
+				continue;
+			}
+			BigDecimal expected = saved[1].add(saved[2]);
+			BigDecimal loadedSum = loadedSums == null ? null : loadedSums.getOrDefault(account.getID(), BigDecimal.ZERO);
+			Drift drift = new Drift(account, saved[0], account.getBalance(), expected, saved[2], loadedSum);
+			if (drift.isBalanceDrifted() || drift.isTransactionsDrifted()) {
+				drifts.add(drift);
+			}
+		}
+		return drifts;
+	}
+
+	/**
+	 * Sets the drifted accounts' saved and loaded balances to their expected balances
+	 * Every account is repaired as a single operation, nothing changes if any of them fails to save
+	 * @param drifts - Drifts found by check
+	 * @return repaired - Number of repaired accounts
+	 */
+	public int repair(List<Drift> drifts) throws SQLException {
+		Map<Account, BigDecimal> balances = new LinkedHashMap<Account, BigDecimal>();
+		for (Drift drift : drifts) {
+			if (drift.isBalanceDrifted()) {
+				balances.put(drift.getAccount(), drift.getExpected());
+			}
+		}
+		if (!balances.isEmpty()) {
+			this.ledger.repairBalances(balances);
+		}
+		return balances.size();
+	}
+
+	/**
+	 * Sums a range of days' transactions by account, splitting large ranges between the pool's threads
+	 */
+	private static class SumTask extends RecursiveTask<Map<Integer, BigDecimal>> {
+		private static final long serialVersionUID = 1L;
+		private final List<ArrayList<Transaction>> days;
+		private final int from, to;
+
+		private SumTask(List<ArrayList<Transaction>> days, int from, int to) {
+			this.days = days;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Map<Integer, BigDecimal> compute() {
+			if (this.to - this.from > DAYS_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				SumTask left = new SumTask(this.days, this.from, middle);
+				left.fork();
+				Map<Integer, BigDecimal> sums = new SumTask(this.days, middle, this.to).compute();
+				left.join().forEach((id, sum) -> sums.merge(id, sum, BigDecimal::add));
+				return sums;
+			}
+
+			Map<Integer, BigDecimal> sums = new HashMap<Integer, BigDecimal>();
+			for (int i = this.from; i < this.to; i++) {
+				for (Transaction transaction : this.days.get(i)) {
+					sums.merge(transaction.getAccountID(), transaction.getAmount(), BigDecimal::add);
+				}
+			}
+			return sums;
+		}
+	}
+}
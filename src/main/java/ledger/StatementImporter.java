@@ -0,0 +1,384 @@
+package ledger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bank.Account;
+
+/**
+ * Streams a bank statement's CSV rows into the ledger
+ * Rows are parsed as they're read and added in bounded chunks, each saved as a single batch,
+ * so memory use doesn't grow with the statement's size
+ * A failing row stops the import leaving the chunks before it imported
+ * Rows matching transactions already in the ledger by account, date, amount and name are skipped,
+ * a statement repeating a row only skips as many of them as the ledger already held
+ * @author pogegril
+ */
+public class StatementImporter {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Ledger ledger;
+	private final ImportMapping mapping;
+	private final int chunkSize;
+	// Accounts by lower case name
+	private final Map<String, Account> accounts;
+
+	// Input buffer read a block at a time
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position, limit;
+	private Reader in;
+	private int line;
+
+	// Transactions added by the current import have IDs from this one on
+	private int firstImportedID;
+	// Rows seen so far by duplicate key, only for keys already in the ledger
+	private final Map<List<Object>, Integer> seen = new HashMap<List<Object>, Integer>();
+
+	/**
+	 * Creates an importer adding statement rows to the ledger
+	 * @param ledger - User ledger
+	 * @param mapping - Statement's column mapping
+	 * @param chunkSize - Number of transactions saved per batch
+	 */
+	public StatementImporter(Ledger ledger, ImportMapping mapping, int chunkSize) {
+		if (chunkSize <= 0) { throw new IllegalArgumentException("Chunk size must be positive."); }
+		this.ledger = ledger;
+		this.mapping = mapping;
+		this.chunkSize = chunkSize;
+		this.accounts = new HashMap<String, Account>();
+		for (Account account : ledger.getAssets().getAssets()) {
+			this.accounts.putIfAbsent(account.getName().toLowerCase(), account);
+		}
+		if (mapping.getAccountColumn() < 0 && mapping.getAccount() == null) {
+			throw new IllegalArgumentException("An account column or a target account is required.");
+		}
+	}
+
+	/**
+	 * Imports the statement file
+	 * @param file - UTF-8 CSV statement
+	 * @return imported - Number of transactions added, rows already in the ledger are skipped
+	 */
+	public int importFile(Path file) throws IOException, SQLException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return importFrom(reader);
+		}
+	}
+
+	/**
+	 * Imports the statement read from the reader
+	 * @param reader - CSV statement
+	 * @return imported - Number of transactions added, rows already in the ledger are skipped
+	 */
+	public int importFrom(Reader reader) throws IOException, SQLException {
+		this.in = reader;
+		this.position = this.limit = 0;
+		this.line = 0;
+		this.firstImportedID = Integer.MAX_VALUE;
+		this.seen.clear();
+
+		int imported = 0;
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		List<Transaction> chunk = new ArrayList<Transaction>(this.chunkSize);
+		boolean header = this.mapping.hasHeader();
+		while (readRecord(fields, field)) {
+			if (header) {
+				header = false;
+				continue;
+			}
+			// Blank lines are skipped
+			if (fields.size() == 1 && fields.get(0).isEmpty()) {
+				continue;
+			}
+
+			try {
+				Transaction transaction = parseTransaction(fields);
+				if (transaction != null && !isDuplicate(transaction)) {
+					chunk.add(transaction);
+				}
+			} catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+				throw new IllegalArgumentException("Line " + this.line + ": " + e.getMessage(), e);
+			}
+
+			if (chunk.size() == this.chunkSize) {
+				imported += addChunk(chunk);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			imported += addChunk(chunk);
+		}
+		return imported;
+	}
+
+	/**
+	 * Adds the chunk's transactions to the ledger as a single batch and empties it
+	 * @param chunk - Parsed transactions
+	 * @return imported - Number of transactions added
+	 */
+	private int addChunk(List<Transaction> chunk) throws SQLException {
+		int imported = this.ledger.addTransactions(chunk);
+		for (Transaction transaction : chunk) {
+			if (transaction.getID() != 0) {
+				this.firstImportedID = Math.min(this.firstImportedID, transaction.getID());
+			}
+		}
+		chunk.clear();
+		return imported;
+	}
+
+	/**
+	 * Returns whether the row is already in the ledger
+	 * Only transactions recorded before the import count, so the n-th repeat of a row
+	 * is a duplicate if the ledger already held at least n matching transactions
+	 * @param transaction - Parsed row
+	 * @return isDuplicate?
+	 */
+	private boolean isDuplicate(Transaction transaction) {
+		ArrayList<Transaction> dayRecords = this.ledger.getRecordsByDay(transaction.getDate());
+		if (dayRecords == null) {
+			return false;
+		}
+		int existing = 0;
+		for (Transaction record : dayRecords) {
+			if (record.getID() < this.firstImportedID && record.getAccountID() == transaction.getAccountID()
+					&& record.getAmount().compareTo(transaction.getAmount()) == 0 && record.getName().equals(transaction.getName())) {
+				existing++;
+			}
+		}
+		if (existing == 0) {
+			return false;
+		}
+		List<Object> key = Arrays.asList(transaction.getAccountID(), transaction.getDate(), transaction.getAmount().stripTrailingZeros(), transaction.getName());
+		return this.seen.merge(key, 1, Integer::sum) <= existing;
+	}
+
+	/**
+	 * Builds the transaction described by the row's fields
+	 * Returns null for rows without an amount
+	 * @param fields - Row's fields
+	 * @return transaction
+	 */
+	private Transaction parseTransaction(List<String> fields) {
+		String amountText = getField(fields, this.mapping.getAmountColumn());
+		if (amountText == null || amountText.isBlank()) {
+			return null;
+		}
+		BigDecimal amount = parseAmount(amountText, this.mapping.getDecimalSeparator());
+		if (amount.signum() == 0) {
+			return null;
+		}
+		LocalDate date = parseDate(getField(fields, this.mapping.getDateColumn()), this.mapping.getDateOrder());
+
+		String desc = getField(fields, this.mapping.getDescColumn());
+		if (desc != null && desc.isBlank()) {
+			desc = null;
+		}
+		String name = getField(fields, this.mapping.getNameColumn());
+		if (name == null || name.isBlank()) {
+			// Statements without a payee column use the description as the name
+			name = desc;
+			desc = null;
+		}
+		String tag = getField(fields, this.mapping.getTagColumn());
+		if (tag == null || tag.isBlank()) {
+			tag = this.mapping.getTag();
+		}
+
+		String accountName = getField(fields, this.mapping.getAccountColumn());
+		if (accountName == null || accountName.isBlank()) {
+			accountName = this.mapping.getAccount();
+		}
+		Account account = accountName == null ? null : this.accounts.get(accountName.trim().toLowerCase());
+		if (account == null) {
+			throw new IllegalArgumentException("Unknown account: " + accountName);
+		}
+		if (amount.stripTrailingZeros().scale() > account.getScale()) {
+			throw new IllegalArgumentException("Amount " + amount.toPlainString() + " has more decimals than " + account.getName() + " allows.");
+		}
+
+		if (desc == null) {
+			return new Transaction(name, tag, account.getID(), date, amount);
+		}
+		return new Transaction(name, desc, tag, account.getID(), date, amount);
+	}
+
+	/**
+	 * Returns the field at the column, null if the column isn't mapped or the row is too short
+	 * @param fields - Row's fields
+	 * @param column - Column index
+	 * @return field
+	 */
+	private static String getField(List<String> fields, int column) {
+		return column < 0 || column >= fields.size() ? null : fields.get(column);
+	}
+
+	/**
+	 * Parses an amount such as "-1,234.56", "1.234,56 €" or "(12.50)"
+	 * Digits are accumulated straight into the unscaled value, thousands separators, spaces,
+	 * plus signs and currency symbols are ignored and a minus sign or parentheses make it negative
+	 * @param text - Amount text
+	 * @param decimalSeparator - '.' or ','
+	 * @return amount
+	 */
+	static BigDecimal parseAmount(String text, char decimalSeparator) {
+		char groupSeparator = decimalSeparator == '.' ? ',' : '.';
+		long unscaled = 0;
+		int scale = -1;
+		boolean negative = false, digits = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				unscaled = Math.addExact(Math.multiplyExact(unscaled, 10), c - '0');
+				if (scale >= 0) {
+					scale++;
+				}
+				digits = true;
+			} else if (c == decimalSeparator) {
+				if (scale >= 0) { throw new IllegalArgumentException("Invalid amount: " + text); }
+				scale = 0;
+			} else if (c == '-' || c == '(') {
+				negative = true;
+			} else if (c != groupSeparator && c != '+' && c != ')' && c != '\'' && !Character.isWhitespace(c) && !Character.isSpaceChar(c)
+					&& Character.getType(c) != Character.CURRENCY_SYMBOL) {
+				throw new IllegalArgumentException("Invalid amount: " + text);
+			}
+		}
+		if (!digits) { throw new IllegalArgumentException("Invalid amount: " + text); }
+		return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+	}
+
+	/**
+	 * Parses a date made of three numbers with any separators between them, such as "31/12/2023" or "2023-12-31"
+	 * Two digit years are taken as 20YY
+	 * @param text - Date text
+	 * @param order - Order of the date's numbers
+	 * @return date
+	 */
+	static LocalDate parseDate(String text, ImportMapping.DateOrder order) {
+		if (text == null) { throw new IllegalArgumentException("Missing date."); }
+		int[] numbers = new int[3];
+		int count = 0;
+		boolean inNumber = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (!inNumber) {
+					if (count == numbers.length) { throw new IllegalArgumentException("Invalid date: " + text); }
+					count++;
+					inNumber = true;
+				}
+				numbers[count - 1] = Math.addExact(Math.multiplyExact(numbers[count - 1], 10), c - '0');
+			} else {
+				inNumber = false;
+			}
+		}
+		if (count != numbers.length) { throw new IllegalArgumentException("Invalid date: " + text); }
+
+		int year, month, day;
+		switch (order) {
+			case YMD:
+				year = numbers[0];
+				month = numbers[1];
+				day = numbers[2];
+				break;
+			case MDY:
+				month = numbers[0];
+				day = numbers[1];
+				year = numbers[2];
+				break;
+			default:
+				day = numbers[0];
+				month = numbers[1];
+				year = numbers[2];
+				break;
+		}
+		if (year < 100) {
+			year += 2000;
+		}
+		return LocalDate.of(year, month, day);
+	}
+
+	/**
+	 * Reads the next CSV record into the fields
+	 * Quoted fields may hold delimiters, line breaks and doubled quotes
+	 * @param fields - Receives the record's fields
+	 * @param field - Reusable field buffer
+	 * @return isRead? - False at the end of the input
+	 */
+	private boolean readRecord(List<String> fields, StringBuilder field) throws IOException {
+		fields.clear();
+		field.setLength(0);
+		int c = read();
+		if (c == -1) {
+			return false;
+		}
+		this.line++;
+
+		char delimiter = this.mapping.getDelimiter();
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					throw new IllegalArgumentException("Line " + this.line + ": Unterminated quoted field.");
+				} else if (c == '"') {
+					int next = read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						c = next;
+						continue;
+					}
+				} else {
+					if (c == '\n') {
+						this.line++;
+					}
+					field.append((char) c);
+				}
+			} else if (c == delimiter) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\n' || c == -1) {
+				break;
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c != '\r') {
+				field.append((char) c);
+			}
+			c = read();
+		}
+		fields.add(field.toString());
+		return true;
+	}
+
+	/**
+	 * Returns the next input character, -1 at the end of the input
+	 * @return character
+	 */
+	private int read() throws IOException {
+		if (this.position == this.limit) {
+			this.limit = this.in.read(this.buffer, 0, this.buffer.length);
+			this.position = 0;
+			if (this.limit <= 0) {
+				this.limit = 0;
+				return -1;
+			}
+		}
+		return this.buffer[this.position++];
+	}
+}
@@ -158,6 +158,34 @@ public class Transaction {
 		this.amount = amount;
 	}
 
+	/**
+	 * Returns whether the object is the same transaction
+	 * Saved transactions are the same if they share their ID, new ones without an ID are only equal to themselves
+	 * @param object - Object to compare
+	 * @return isEqual?
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof Transaction)) {
+			return false;
+		}
+		Transaction transaction = (Transaction) object;
+		return this.ID != 0 && this.ID == transaction.ID;
+	}
+
+	/**
+	 * Returns the transaction's hash code based on its ID
+	 * New transactions get a new hash code once they're saved, hashed collections holding them from before can't find them afterwards
+	 * @return hashCode
+	 */
+	@Override
+	public int hashCode() {
+		return this.ID != 0 ? Integer.hashCode(this.ID) : System.identityHashCode(this);
+	}
+
 	/**
 	 * Returns a String with the transaction's info to be displayed
 	 * @return string
@@ -1,10 +1,18 @@
 package main;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
+import ledger.ImportMapping;
 import ledger.Ledger;
+import ledger.LedgerExporter;
+import ledger.Reconciler;
+import ledger.StatementImporter;
 import sql.Database;
 import tui.TUI;
 
@@ -14,20 +22,251 @@ import tui.TUI;
  */
 public class BagCheck {
 
+	// Number of months kept in memory, 0 loads the whole history
+	private static final int RESIDENT_MONTHS = Integer.getInteger("bagcheck.residentMonths", 0);
+	// Closed years before this one are moved into archive databases on startup, 0 keeps every year
+	// Archived years are still read on startup unless the resident months are bounded
+	private static final int ARCHIVE_BEFORE = Integer.getInteger("bagcheck.archiveBefore", 0);
+	// Balances are checked on startup when set to report, and fixed too when set to repair
+	private static final String RECONCILE = System.getProperty("bagcheck.reconcile", "");
+
 	/**
 	 * Main program process
 	 * @param args - Java arguments
 	 */
 	public static void main(String[] args) {
 		// Initialization & Loading database
-		Database.initialize();
-		Ledger ledger = new Ledger();
-		loadLedger(ledger);
+		try {
+			Database.initialize();
+		} catch (IOException | SQLException e) {
+			e.printStackTrace();
+			System.err.println("The database couldn't be opened, BagCheck will exit.");
+			Database.close();
+			System.exit(1);
+		}
+		if (ARCHIVE_BEFORE > 0) {
+			archiveYears(ARCHIVE_BEFORE);
+			if (RESIDENT_MONTHS <= 0) {
+				System.err.println("Archived years are loaded in full, set bagcheck.residentMonths to leave them on disk.");
+			}
+		}
+		if (args.length > 0 && args[0].equals("--backup")) {
+			// Headless backup, nothing else is loaded
+			backup();
+			Database.close();
+			return;
+		}
+		Ledger ledger = new Ledger(RESIDENT_MONTHS);
+		if (ledger.isBounded()) {
+			// Older months are faulted in when they're reached
+			loadLedger(ledger, ledger.getResidentStart());
+		} else {
+			loadLedger(ledger);
+		}
+
+		if (RECONCILE.equals("report") || RECONCILE.equals("repair")) {
+			reconcile(ledger, RECONCILE.equals("repair"));
+		}
 
 		try {
-			new TUI().start(ledger);
+			if (args.length > 0 && args[0].equals("--reconcile")) {
+				// Headless check, repairs the drifted balances with --repair
+				reconcile(ledger, args.length > 1 && args[1].equals("--repair"));
+			} else if (args.length > 0 && args[0].equals("--import")) {
+				// Headless statement import, skips the interface
+				importStatement(ledger, args);
+			} else if (args.length > 0 && args[0].equals("--export")) {
+				exportLedger(ledger, args);
+			} else {
+				new TUI().start(ledger);
+			}
+			saveSnapshot(ledger);
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			Database.close();
+		}
+	}
+
+	/**
+	 * Imports a bank statement from the command line arguments
+	 * --import FILE --columns SPEC [--account NAME] [--delimiter C] [--dates dmy|mdy|ymd] [--decimal-comma] [--no-header] [--tag TAG]
+	 * @param ledger - User's ledger
+	 * @param args - Java arguments
+	 */
+	public static void importStatement(Ledger ledger, String[] args) {
+		try {
+			if (args.length < 2) { throw new IllegalArgumentException("Missing statement file."); }
+			Path file = Path.of(args[1]);
+			String columns = null, account = null, delimiter = null, dates = null, tag = null;
+			boolean decimalComma = false, header = true;
+			for (int i = 2; i < args.length; i++) {
+				switch (args[i]) {
+					case "--columns":
+						columns = getValue(args, ++i);
+						break;
+					case "--account":
+						account = getValue(args, ++i);
+						break;
+					case "--delimiter":
+						delimiter = getValue(args, ++i);
+						break;
+					case "--dates":
+						dates = getValue(args, ++i);
+						break;
+					case "--tag":
+						tag = getValue(args, ++i);
+						break;
+					case "--decimal-comma":
+						decimalComma = true;
+						break;
+					case "--no-header":
+						header = false;
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+			if (columns == null) { throw new IllegalArgumentException("Missing --columns mapping."); }
+
+			ImportMapping mapping = new ImportMapping(columns);
+			mapping.setAccount(account);
+			mapping.setHeader(header);
+			if (delimiter != null) {
+				mapping.setDelimiter(delimiter.equals("\\t") ? '\t' : delimiter.charAt(0));
+			}
+			if (dates != null) {
+				mapping.setDateOrder(ImportMapping.DateOrder.getByName(dates));
+			}
+			if (decimalComma) {
+				mapping.setDecimalSeparator(',');
+			}
+			if (tag != null) {
+				mapping.setTag(tag);
+			}
+
+			int imported = new StatementImporter(ledger, mapping, StatementImporter.DEFAULT_CHUNK_SIZE).importFile(file);
+			System.out.println("Imported " + imported + " transactions.");
+		} catch (IllegalArgumentException | IOException | SQLException e) {
+			System.err.println("Import failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Exports the ledger's transactions from the command line arguments
+	 * --export FILE [--format csv|jsonl] [--from YYYY-MM-DD] [--to YYYY-MM-DD] [--account NAME] [--tag TAG]
+	 * @param ledger - User's ledger
+	 * @param args - Java arguments
+	 */
+	public static void exportLedger(Ledger ledger, String[] args) {
+		try {
+			if (args.length < 2) { throw new IllegalArgumentException("Missing export file."); }
+			Path file = Path.of(args[1]);
+			LedgerExporter.Format format = LedgerExporter.Format.CSV;
+			LocalDate from = null, to = null;
+			String account = null, tag = null;
+			for (int i = 2; i < args.length; i++) {
+				switch (args[i]) {
+					case "--format":
+						format = LedgerExporter.Format.getByName(getValue(args, ++i));
+						break;
+					case "--from":
+						from = LocalDate.parse(getValue(args, ++i));
+						break;
+					case "--to":
+						to = LocalDate.parse(getValue(args, ++i));
+						break;
+					case "--account":
+						account = getValue(args, ++i);
+						break;
+					case "--tag":
+						tag = getValue(args, ++i);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+
+			LedgerExporter exporter = new LedgerExporter(ledger, format);
+			exporter.setDateRange(from, to);
+			exporter.setTag(tag);
+			if (account != null) {
+				int id = ledger.getAssets().getIDByName(account);
+				if (id < 0) { throw new IllegalArgumentException("Unknown account: " + account); }
+				exporter.setAccount(id);
+			}
+
+			int exported = exporter.exportTo(file);
+			System.out.println("Exported " + exported + " transactions.");
+		} catch (IllegalArgumentException | DateTimeParseException | IOException | SQLException e) {
+			System.err.println("Export failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns an option's value
+	 * @param args - Java arguments
+	 * @param index - Value's index
+	 * @return value
+	 */
+	private static String getValue(String[] args, int index) {
+		if (index >= args.length || args[index].isEmpty()) { throw new IllegalArgumentException("Missing value for " + args[index - 1] + "."); }
+		return args[index];
+	}
+
+	/**
+	 * Attempts to back the database up, waiting for the backup to finish
+	 */
+	public static void backup() {
+		try {
+			System.out.println("Backed up to " + Database.backup().join() + ".");
+		} catch (CompletionException e) {
+			System.err.println("Backup failed: " + e.getCause().getMessage());
+		}
+	}
+
+	/**
+	 * Checks every account's balance against its transactions and prints the drifted ones
+	 * @param ledger - User's ledger
+	 * @param repair - Sets the drifted balances to their expected ones
+	 */
+	public static void reconcile(Ledger ledger, boolean repair) {
+		try {
+			Reconciler reconciler = new Reconciler(ledger);
+			List<Reconciler.Drift> drifts = reconciler.check();
+			for (Reconciler.Drift drift : drifts) {
+				System.out.println(drift);
+			}
+			System.out.println(drifts.size() + " accounts drifted.");
+			if (repair && !drifts.isEmpty()) {
+				System.out.println("Repaired " + reconciler.repair(drifts) + " balances.");
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Attempts to save a snapshot of the ledger for the next startup
+	 * @param ledger - User's ledger
+	 */
+	public static void saveSnapshot(Ledger ledger) {
+		try {
+			Database.saveSnapshot(ledger);
+		} catch (IOException | SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Attempts to archive the closed years before the received one
+	 * @param year - First year kept in the main database
+	 */
+	public static void archiveYears(int year) {
+		try {
+			Database.archiveYearsBefore(year);
+		} catch (SQLException e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -1,12 +1,12 @@
 package sql;
 
 import java.math.BigDecimal;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import bank.Account;
 import bank.Currency;
@@ -17,48 +17,67 @@ import bank.Currency;
  */
 public class AccountDAO {
 
-	private Connection connection;
+	// Highest ID of a deleted account, kept so its archived transactions never match a new account
+	public static final String LAST_DELETED_SETTING = "last_deleted_account";
+
+	private StatementCache statements;
 
 	/**
 	 * Accounts Data Access Object
-	 * @param connection - JDBC connection
+	 * @param statements - Statement cache of the JDBC connection
 	 */
-	public AccountDAO(Connection connection) {
-		this.connection = connection;
+	public AccountDAO(StatementCache statements) {
+		this.statements = statements;
 	}
 
 	/**
-	 * Adds an account to the database
+	 * Adds an account to the database with its assigned ID
 	 * @param account - Account to save
 	 */
 	public void add(Account account) throws SQLException {
-		String sqlStatement = "INSERT INTO accounts(name, balance, currency) VALUES (?, ?, ?)";
-		try (PreparedStatement statement = this.connection.prepareStatement(sqlStatement, Statement.RETURN_GENERATED_KEYS)) {
-			statement.setString(1, account.getName());
-			statement.setBigDecimal(2, account.getBalance());
-			statement.setInt(3, account.getCurrency().getID());
-			statement.executeUpdate();
-
-			try (ResultSet id = statement.getGeneratedKeys()) {
-				if (id.next()) {
-					account.setID(id.getInt(1));	
-				} else {
-					throw new  SQLException("Failed to retrieve account's auto-generated ID.");
-				}
-			}
+		// A new account's balance is its opening balance
+		String sqlStatement = "INSERT INTO accounts(id, name, balance, currency, scale, opening) VALUES (?, ?, ?, ?, ?, ?)";
+		PreparedStatement statement = this.statements.prepare(sqlStatement);
+		statement.setInt(1, account.getID());
+		statement.setString(2, account.getName());
+		statement.setLong(3, FixedPoint.toMinorUnits(account.getBalance(), account.getScale()));
+		statement.setInt(4, account.getCurrency().getID());
+		statement.setInt(5, account.getScale());
+		statement.setLong(6, FixedPoint.toMinorUnits(account.getBalance(), account.getScale()));
+		statement.executeUpdate();
+	}
+
+	/**
+	 * Returns the highest account ID ever handed out, deleted accounts included
+	 * Returns 0 if there were never any accounts
+	 * @return id
+	 */
+	public int getMaxID() throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT MAX(COALESCE((SELECT MAX(id) FROM accounts), 0),"
+				+ " COALESCE((SELECT CAST(value AS INTEGER) FROM settings WHERE key = ?), 0))");
+		statement.setString(1, LAST_DELETED_SETTING);
+		try (ResultSet result = statement.executeQuery()) {
+			return result.next() ? result.getInt(1) : 0;
 		}
 	}
 
 	/**
 	 * Deletes the account with the received id
+	 * Its ID is remembered so it's never handed out again, archived years may still hold its transactions
 	 * @param id - Account id
 	 * @return update - Number of database rows update (Should be 0 or 1)
 	 */
 	public int delete(int id) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("DELETE FROM accounts WHERE id = ?")) {
-			statement.setInt(1, id);
-			return statement.executeUpdate();
-		}
+		PreparedStatement statement = this.statements.prepare("DELETE FROM accounts WHERE id = ?");
+		statement.setInt(1, id);
+		int deleted = statement.executeUpdate();
+
+		PreparedStatement last = this.statements.prepare("INSERT INTO settings(key, value) VALUES (?1, ?2)"
+				+ " ON CONFLICT(key) DO UPDATE SET value = MAX(CAST(value AS INTEGER), CAST(?2 AS INTEGER))");
+		last.setString(1, LAST_DELETED_SETTING);
+		last.setString(2, Integer.toString(id));
+		last.executeUpdate();
+		return deleted;
 	}
 
 	/**
@@ -67,11 +86,10 @@ public class AccountDAO {
 	 * @param name - New name
 	 */
 	public void updateName(int id, String name) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("UPDATE accounts SET name = ? WHERE id = ?")) {
-			statement.setString(1, name);
-			statement.setInt(2, id);
-			statement.executeUpdate();
-		}
+		PreparedStatement statement = this.statements.prepare("UPDATE accounts SET name = ? WHERE id = ?");
+		statement.setString(1, name);
+		statement.setInt(2, id);
+		statement.executeUpdate();
 	}
 
 	/**
@@ -80,24 +98,51 @@ public class AccountDAO {
 	 * @param currency_id - Currency ID
 	 */
 	public void updateCurrency(int id, int currency_id) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("UPDATE accounts SET currency = ? WHERE id = ?")) {
-			statement.setInt(1, currency_id);
-			statement.setInt(2, id);
-			statement.executeUpdate();
-		}
+		PreparedStatement statement = this.statements.prepare("UPDATE accounts SET currency = ? WHERE id = ?");
+		statement.setInt(1, currency_id);
+		statement.setInt(2, id);
+		statement.executeUpdate();
 	}
 
 	/**
 	 * Updates the database's account entry's balance
 	 * @param id - Account ID
 	 * @param balance - Updated balance
+	 * @param scale - Account's stored scale
 	 */
-	public void updateBalance(int id, BigDecimal balance) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("UPDATE accounts SET balance = ? WHERE id = ?")) {
-			statement.setBigDecimal(1, balance);
-			statement.setInt(2, id);
-			statement.executeUpdate();
-		}
+	public void updateBalance(int id, BigDecimal balance, int scale) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("UPDATE accounts SET balance = ? WHERE id = ?");
+		statement.setLong(1, FixedPoint.toMinorUnits(balance, scale));
+		statement.setInt(2, id);
+		statement.executeUpdate();
+	}
+
+	/**
+	 * Adds an amount to the database's account entry's balance
+	 * @param id - Account ID
+	 * @param amount - Amount to add
+	 * @param scale - Account's stored scale
+	 */
+	public void addToBalance(int id, BigDecimal amount, int scale) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("UPDATE accounts SET balance = balance + ? WHERE id = ?");
+		statement.setLong(1, FixedPoint.toMinorUnits(amount, scale));
+		statement.setInt(2, id);
+		statement.executeUpdate();
+	}
+
+	/**
+	 * Updates the account entry's stored scale converting its balances to the new scale
+	 * The account's transactions must be rescaled along with it
+	 * @param id - Account ID
+	 * @param scale - Current stored scale
+	 * @param newScale - Greater stored scale
+	 */
+	public void updateScale(int id, int scale, int newScale) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("UPDATE accounts SET balance = balance * ?1, opening = opening * ?1, scale = ?2 WHERE id = ?3");
+		statement.setLong(1, BigDecimal.ONE.movePointRight(newScale - scale).longValueExact());
+		statement.setInt(2, newScale);
+		statement.setInt(3, id);
+		statement.executeUpdate();
 	}
 
 	/**
@@ -105,22 +150,44 @@ public class AccountDAO {
 	 * @return accounts
 	 */
 	public ArrayList<Account> getAccounts() throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("SELECT * FROM accounts")) {
-			try (ResultSet result = statement.executeQuery()) {
-
-				ArrayList<Account> accounts = new ArrayList<Account>();
-				while (result.next()) {
-					String name = result.getString("name");
-					int id = result.getInt("id");
-					Currency currency = Currency.getByID(result.getInt("currency"));
-					BigDecimal balance = result.getBigDecimal("balance");
-					Account account = new Account(name, currency, balance);
-					account.setID(id);
-					accounts.add(account);
-				}
-				return accounts;
-			}	
+		PreparedStatement statement = this.statements.prepare("SELECT id, name, currency, scale, balance FROM accounts");
+		try (ResultSet result = statement.executeQuery()) {
+
+			ArrayList<Account> accounts = new ArrayList<Account>();
+			while (result.next()) {
+				int id = result.getInt(1);
+				String name = result.getString(2);
+				Currency currency = Currency.getByID(result.getInt(3));
+				int scale = result.getInt(4);
+				BigDecimal balance = FixedPoint.fromMinorUnits(result.getLong(5), scale);
+				Account account = new Account(name, currency, balance);
+				account.setID(id);
+				account.setScale(scale);
+				accounts.add(account);
+			}
+			return accounts;
+		}	
+	}
+
+	/**
+	 * Returns each account's saved balance along with the amounts it should add up to
+	 * The transactions are summed by account in a single pass, archived years through their totals
+	 * @return balances - { Saved balance, Opening balance, Transactions' sum } by account ID
+	 */
+	public Map<Integer, BigDecimal[]> getReconciliation() throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT a.id, a.scale, a.balance, a.opening, COALESCE(t.total, 0) + COALESCE(z.total, 0) FROM accounts a"
+				+ " LEFT JOIN (SELECT account_id, SUM(amount) AS total FROM transactions GROUP BY account_id) t ON t.account_id = a.id"
+				+ " LEFT JOIN (SELECT account_id, SUM(amount) AS total FROM archive_totals GROUP BY account_id) z ON z.account_id = a.id");
+		Map<Integer, BigDecimal[]> balances = new HashMap<Integer, BigDecimal[]>();
+		try (ResultSet result = statement.executeQuery()) {
+			while (result.next()) {
+				int scale = result.getInt(2);
+				balances.put(result.getInt(1), new BigDecimal[] {
+						FixedPoint.fromMinorUnits(result.getLong(3), scale),
+						FixedPoint.fromMinorUnits(result.getLong(4), scale),
+						FixedPoint.fromMinorUnits(result.getLong(5), scale) });
+			}
 		}
+		return balances;
 	}
 }
-
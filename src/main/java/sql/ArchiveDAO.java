@@ -0,0 +1,271 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import ledger.Transaction;
+
+/**
+ * Handles the closed years moved out of the main database into their own archive databases
+ * Archives are only attached while they're being read or written, the main database keeps
+ * each archived year's date range and per-account totals so they're not needed otherwise
+ * Archived rows keep the stored scale they had so rescaling an account never has to open them
+ * Only ledgers bounded to their resident months leave archives unread, full loads read them all
+ * @author pogegril
+ */
+public class ArchiveDAO {
+
+	// Archive databases are named archive-YYYY.db
+	public static final String FILE_PREFIX = "archive-";
+	public static final String FILE_SUFFIX = ".db";
+	private static final String SCHEMA = "archive";
+	private static final String SELECT_STATEMENT = "SELECT t.id, t.name, t.description, t.tag, t.account_id, t.date, t.amount, t.scale FROM archive.transactions t JOIN main.accounts a ON a.id = t.account_id"
+			+ " WHERE t.date BETWEEN ? AND ? AND t.id NOT IN (SELECT id FROM main.archive_removed)";
+
+	private StatementCache statements;
+
+	/**
+	 * Archives Data Access Object
+	 * @param statements - Statement cache of the JDBC connection
+	 */
+	public ArchiveDAO(StatementCache statements) {
+		this.statements = statements;
+	}
+
+	/**
+	 * Moves the year's transactions from the main database into the archive database
+	 * Rows are copied and committed into the archive before they're deleted from the main database,
+	 * an interrupted move leaves them in both and archiving the year again completes it
+	 * The connection must not be inside a transaction
+	 * @param year - Closed year
+	 * @param file - Year's archive database
+	 * @return archived - Number of transactions moved
+	 */
+	public int archive(int year, Path file) throws SQLException {
+		long first = LocalDate.of(year, 1, 1).toEpochDay();
+		long last = LocalDate.of(year, 12, 31).toEpochDay();
+		Connection connection = this.statements.getConnection();
+
+		attach(connection, file);
+		try {
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE IF NOT EXISTS archive.transactions(id INTEGER PRIMARY KEY, name TEXT NOT NULL, description TEXT, tag TEXT NOT NULL, account_id INTEGER NOT NULL, date INTEGER NOT NULL, amount INTEGER NOT NULL, scale INTEGER NOT NULL)");
+				statement.execute("CREATE INDEX IF NOT EXISTS archive.transactions_date ON transactions(date)");
+				int archived;
+				try (PreparedStatement copy = connection.prepareStatement("INSERT OR REPLACE INTO archive.transactions(id, name, description, tag, account_id, date, amount, scale) "
+						+ "SELECT t.id, t.name, t.description, t.tag, t.account_id, t.date, t.amount, a.scale FROM main.transactions t JOIN main.accounts a ON a.id = t.account_id WHERE t.date BETWEEN ? AND ?")) {
+					copy.setLong(1, first);
+					copy.setLong(2, last);
+					archived = copy.executeUpdate();
+				}
+				// The archive is saved first so an interrupted move never loses transactions
+				connection.commit();
+				if (archived == 0) {
+					return 0;
+				}
+
+				try (PreparedStatement totals = connection.prepareStatement("INSERT INTO main.archive_totals(year, account_id, count, amount) "
+						+ "SELECT ?, account_id, COUNT(*), SUM(amount) FROM main.transactions WHERE date BETWEEN ? AND ? GROUP BY account_id "
+						+ "ON CONFLICT(year, account_id) DO UPDATE SET count = count + excluded.count, amount = amount + excluded.amount")) {
+					totals.setInt(1, year);
+					totals.setLong(2, first);
+					totals.setLong(3, last);
+					totals.executeUpdate();
+				}
+				try (PreparedStatement range = connection.prepareStatement("INSERT INTO main.archives(year, first_date, last_date, last_id) "
+						+ "SELECT ?, MIN(date), MAX(date), MAX(id) FROM main.transactions WHERE date BETWEEN ? AND ? "
+						+ "ON CONFLICT(year) DO UPDATE SET first_date = MIN(first_date, excluded.first_date), last_date = MAX(last_date, excluded.last_date), last_id = MAX(last_id, excluded.last_id)")) {
+					range.setInt(1, year);
+					range.setLong(2, first);
+					range.setLong(3, last);
+					range.executeUpdate();
+				}
+				try (PreparedStatement delete = connection.prepareStatement("DELETE FROM main.transactions WHERE date BETWEEN ? AND ?")) {
+					delete.setLong(1, first);
+					delete.setLong(2, last);
+					delete.executeUpdate();
+				}
+				connection.commit();
+				return archived;
+			} catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} finally {
+			detach(connection);
+		}
+	}
+
+	/**
+	 * Passes every archived transaction of the year between the received dates to the consumer
+	 * Transactions of removed accounts and removed archived transactions are skipped
+	 * The connection must not be inside a transaction
+	 * @param file - Year's archive database
+	 * @param startDate - First date of the range
+	 * @param endDate - Last date of the range
+	 * @param fetchSize - Number of rows fetched at a time
+	 * @param consumer - Receives each transaction
+	 */
+	public void forEachTransaction(Path file, LocalDate startDate, LocalDate endDate, int fetchSize, Consumer<Transaction> consumer) throws SQLException {
+		Connection connection = this.statements.getConnection();
+		attach(connection, file);
+		try {
+			// Statements on attached schemas aren't cached since they're only valid while attached
+			try (PreparedStatement statement = connection.prepareStatement(SELECT_STATEMENT)) {
+				statement.setLong(1, startDate.toEpochDay());
+				statement.setLong(2, endDate.toEpochDay());
+				TransactionDAO transDao = new TransactionDAO(this.statements);
+				transDao.setFetchSize(fetchSize);
+				transDao.stream(statement, consumer);
+			}
+		} finally {
+			detach(connection);
+		}
+	}
+
+	/**
+	 * Returns the archived years with transactions between the received dates in order
+	 * @param startDate - First date of the range
+	 * @param endDate - Last date of the range
+	 * @return years
+	 */
+	public List<Integer> getYears(LocalDate startDate, LocalDate endDate) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT year FROM archives WHERE last_date >= ? AND first_date <= ? ORDER BY year");
+		statement.setLong(1, startDate.toEpochDay());
+		statement.setLong(2, endDate.toEpochDay());
+
+		List<Integer> years = new ArrayList<Integer>();
+		try (ResultSet result = statement.executeQuery()) {
+			while (result.next()) {
+				years.add(result.getInt(1));
+			}
+		}
+		return years;
+	}
+
+	/**
+	 * Returns whether the year was archived
+	 * @param year - Year
+	 * @return isArchived?
+	 */
+	public boolean isArchived(int year) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT 1 FROM archives WHERE year = ?");
+		statement.setInt(1, year);
+		try (ResultSet result = statement.executeQuery()) {
+			return result.next();
+		}
+	}
+
+	/**
+	 * Returns the dates of the oldest and newest archived transactions
+	 * Returns null if no year was archived
+	 * @return range
+	 */
+	public LocalDate[] getDateRange() throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT MIN(first_date), MAX(last_date) FROM archives");
+		try (ResultSet result = statement.executeQuery()) {
+			result.next();
+			long first = result.getLong(1);
+			if (result.wasNull()) {
+				return null;
+			}
+			return new LocalDate[] { LocalDate.ofEpochDay(first), LocalDate.ofEpochDay(result.getLong(2)) };
+		}
+	}
+
+	/**
+	 * Returns the highest archived transaction ID
+	 * Returns 0 if no year was archived
+	 * @return id
+	 */
+	public int getMaxID() throws SQLException {
+		try (ResultSet result = this.statements.prepare("SELECT COALESCE(MAX(last_id), 0) FROM archives").executeQuery()) {
+			return result.next() ? result.getInt(1) : 0;
+		}
+	}
+
+	/**
+	 * Marks an archived transaction as removed and takes it out of its year's totals
+	 * Returns false if the transaction's year isn't archived
+	 * @param id - Transaction id
+	 * @param accountID - Transaction's account id
+	 * @param date - Transaction's date
+	 * @param amount - Transaction's amount in the account's stored scale
+	 * @return isRemoved?
+	 */
+	public boolean remove(int id, int accountID, LocalDate date, long amount) throws SQLException {
+		if (!isArchived(date.getYear())) {
+			return false;
+		}
+		PreparedStatement removed = this.statements.prepare("INSERT OR IGNORE INTO archive_removed(id) VALUES (?)");
+		removed.setInt(1, id);
+		if (removed.executeUpdate() == 0) {
+			return false;
+		}
+
+		PreparedStatement totals = this.statements.prepare("UPDATE archive_totals SET count = count - 1, amount = amount - ? WHERE year = ? AND account_id = ?");
+		totals.setLong(1, amount);
+		totals.setInt(2, date.getYear());
+		totals.setInt(3, accountID);
+		totals.executeUpdate();
+		return true;
+	}
+
+	/**
+	 * Deletes the archived totals of a removed account
+	 * Its archived transactions are left in place and skipped when read
+	 * @param id - Account id
+	 */
+	public void deleteByAccount(int id) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("DELETE FROM archive_totals WHERE account_id = ?");
+		statement.setInt(1, id);
+		statement.executeUpdate();
+	}
+
+	/**
+	 * Converts the account's archived totals to a greater stored scale
+	 * @param id - Account id
+	 * @param scale - Current stored scale
+	 * @param newScale - Greater stored scale
+	 */
+	public void rescaleByAccount(int id, int scale, int newScale) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("UPDATE archive_totals SET amount = amount * ? WHERE account_id = ?");
+		statement.setLong(1, BigDecimal.ONE.movePointRight(newScale - scale).longValueExact());
+		statement.setInt(2, id);
+		statement.executeUpdate();
+	}
+
+	/**
+	 * Attaches the archive database to the connection
+	 * @param connection - JDBC connection outside of a transaction
+	 * @param file - Archive database
+	 */
+	private static void attach(Connection connection, Path file) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("ATTACH DATABASE ? AS " + SCHEMA)) {
+			statement.setString(1, file.toString());
+			statement.execute();
+		}
+	}
+
+	/**
+	 * Detaches the archive database from the connection
+	 * @param connection - JDBC connection
+	 */
+	private static void detach(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DETACH DATABASE " + SCHEMA);
+		}
+	}
+}
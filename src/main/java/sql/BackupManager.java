@@ -0,0 +1,302 @@
+package sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.sqlite.SQLiteConnection;
+
+/**
+ * Takes online backups of the database with SQLite's backup API while the program keeps running
+ * Pages are copied a few at a time from a read connection, pausing between steps so writers aren't
+ * starved, and a write landing mid-backup makes SQLite restart the copy instead of corrupting it
+ * Only the newest backups are kept
+ * Each backup gets its own directory of archived years, rotated along with it
+ * Archives whose checksum matches the previous backup's copy are hard linked to it instead of copied again
+ * @author pogegril
+ */
+public class BackupManager {
+
+	private static final String PREFIX = "bagcheck-";
+	private static final String SUFFIX = ".db";
+	private static final String PARTIAL_SUFFIX = ".partial";
+	// Suffix of the directory holding a backup's copies of the archive databases, and their checksums file
+	private static final String ARCHIVES_SUFFIX = ".archives";
+	private static final String CHECKSUMS = "checksums.properties";
+	// Suffix of the archives' write-ahead logs, which hold changes not yet in the archive itself
+	private static final String WAL_SUFFIX = "-wal";
+	private static final int READ_BUFFER = 64 * 1024;
+	private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+	// Milliseconds to wait before retrying a step on a busy database and the number of retries
+	private static final int BUSY_SLEEP = 100;
+	private static final int BUSY_RETRIES = 50;
+	// Milliseconds given up between steps
+	private static final long STEP_PAUSE = 5;
+
+	private final ConnectionManager connections;
+	private final Path directory;
+	private final Path archiveDirectory;
+	private final int keep;
+	private final int pagesPerStep;
+	private final Runnable beforeBackup;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates the backup manager and its background thread
+	 * @param connections - Database connections, backups borrow a read connection
+	 * @param directory - Directory holding the backups
+	 * @param archiveDirectory - Directory holding the archive databases
+	 * @param keep - Number of backups kept
+	 * @param pagesPerStep - Number of pages copied per step
+	 * @param beforeBackup - Runs on the backup thread before each backup, to wait for queued writes
+	 */
+	public BackupManager(ConnectionManager connections, Path directory, Path archiveDirectory, int keep, int pagesPerStep, Runnable beforeBackup) {
+		if (keep <= 0) { throw new IllegalArgumentException("Number of kept backups must be positive."); }
+		if (pagesPerStep <= 0) { throw new IllegalArgumentException("Pages per step must be positive."); }
+		this.connections = connections;
+		this.directory = directory;
+		this.archiveDirectory = archiveDirectory;
+		this.keep = keep;
+		this.pagesPerStep = pagesPerStep;
+		this.beforeBackup = beforeBackup;
+		this.executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "bagcheck-backup");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Queues a backup on the background thread
+	 * Backups requested while one is running wait for it to finish
+	 * @return backup - Future path of the new backup
+	 */
+	public CompletableFuture<Path> submit() {
+		CompletableFuture<Path> result = new CompletableFuture<Path>();
+		this.executor.execute(() -> {
+			try {
+				result.complete(backup());
+			} catch (IOException | SQLException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Backs the database and its archives up on the calling thread
+	 * and removes the backups past the kept number
+	 * A backup whose archives fail to copy is removed as a whole
+	 * @return backup - Path of the new backup
+	 */
+	public Path backup() throws IOException, SQLException {
+		this.beforeBackup.run();
+		Files.createDirectories(this.directory);
+		List<Path> previous = getBackups();
+		Path target;
+		do {
+			target = this.directory.resolve(PREFIX + LocalDateTime.now().format(STAMP) + SUFFIX);
+		} while (Files.exists(target));
+
+		Connection connection = this.connections.acquireReader();
+		try {
+			copy(connection.unwrap(SQLiteConnection.class), target);
+		} finally {
+			this.connections.releaseReader(connection);
+		}
+		try {
+			backupArchives(getArchives(target), previous.isEmpty() ? null : getArchives(previous.get(previous.size() - 1)));
+		} catch (IOException | SQLException | RuntimeException e) {
+			delete(target);
+			throw e;
+		}
+		rotate();
+		return target;
+	}
+
+	/**
+	 * Copies the archive databases into the backup's own directory
+	 * Archives unchanged since the previous backup are hard linked to its copies, or copied from them
+	 * where links aren't supported, so only new or rewritten archives go through the backup API
+	 * @param archives - New backup's archives directory
+	 * @param previous - Previous backup's archives directory, null if there's none
+	 */
+	private void backupArchives(Path archives, Path previous) throws IOException, SQLException {
+		if (!Files.isDirectory(this.archiveDirectory)) {
+			return;
+		}
+		Properties previousChecksums = new Properties();
+		if (previous != null && Files.exists(previous.resolve(CHECKSUMS))) {
+			try (Reader reader = Files.newBufferedReader(previous.resolve(CHECKSUMS))) {
+				previousChecksums.load(reader);
+			}
+		}
+
+		Files.createDirectories(archives);
+		Properties checksums = new Properties();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.archiveDirectory, ArchiveDAO.FILE_PREFIX + "*" + ArchiveDAO.FILE_SUFFIX)) {
+			for (Path archive : files) {
+				String name = archive.getFileName().toString();
+				Path target = archives.resolve(name);
+				// Read before copying so a write landing during the copy is copied again next time
+				String checksum = checksum(archive);
+				Path unchanged = previous == null ? null : previous.resolve(name);
+				if (checksum.equals(previousChecksums.getProperty(name)) && Files.exists(unchanged)) {
+					try {
+						Files.createLink(target, unchanged);
+					} catch (UnsupportedOperationException | IOException e) {
+						Files.copy(unchanged, target);
+					}
+				} else {
+					try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + archive)) {
+						copy(connection.unwrap(SQLiteConnection.class), target);
+					}
+				}
+				checksums.setProperty(name, checksum);
+			}
+		}
+		try (Writer writer = Files.newBufferedWriter(archives.resolve(CHECKSUMS))) {
+			checksums.store(writer, null);
+		}
+	}
+
+	/**
+	 * Returns the CRC32 and length of the archive along with its write-ahead log
+	 * @param archive - Archive database
+	 * @return checksum
+	 */
+	private static String checksum(Path archive) throws IOException {
+		CRC32 crc = new CRC32();
+		long length = 0;
+		byte[] buffer = new byte[READ_BUFFER];
+		for (Path file : new Path[] { archive, archive.resolveSibling(archive.getFileName() + WAL_SUFFIX) }) {
+			if (!Files.exists(file)) {
+				continue;
+			}
+			try (InputStream input = Files.newInputStream(file)) {
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					crc.update(buffer, 0, read);
+					length += read;
+				}
+			}
+		}
+		return Long.toHexString(crc.getValue()) + ":" + length;
+	}
+
+	/**
+	 * Copies the connection's main database a few pages at a time
+	 * The copy is written under a temporary name and only renamed once it's complete
+	 * @param source - Connection to the copied database
+	 * @param target - Path of the copy, replaced if it exists
+	 */
+	private void copy(SQLiteConnection source, Path target) throws IOException, SQLException {
+		Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+		try {
+			int result = source.getDatabase().backup("main", partial.toString(), (remaining, pageCount) -> {
+				// Gives way to the program's own reads and writes between steps
+				try {
+					Thread.sleep(STEP_PAUSE);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, BUSY_SLEEP, BUSY_RETRIES, this.pagesPerStep);
+			if (result != 0) {
+				throw new SQLException("Database backup failed with code " + result + ".");
+			}
+		} catch (SQLException e) {
+			Files.deleteIfExists(partial);
+			throw e;
+		}
+		Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Returns the kept backups from the oldest to the newest
+	 * @return backups
+	 */
+	public List<Path> getBackups() throws IOException {
+		List<Path> backups = new ArrayList<Path>();
+		if (!Files.isDirectory(this.directory)) {
+			return backups;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : files) {
+				backups.add(file);
+			}
+		}
+		// Timestamped names sort chronologically
+		Collections.sort(backups);
+		return backups;
+	}
+
+	/**
+	 * Stops accepting backups and waits for the queued ones to finish
+	 * so a backup isn't cut short when the program exits
+	 */
+	public void close() {
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Deletes the oldest backups past the kept number along with their archives
+	 */
+	private void rotate() throws IOException {
+		List<Path> backups = getBackups();
+		for (int i = 0; i < backups.size() - this.keep; i++) {
+			delete(backups.get(i));
+		}
+	}
+
+	/**
+	 * Deletes a backup and its archives directory
+	 * Hard linked archives stay in the backups still linking them
+	 * @param backup - Main database's backup
+	 */
+	private static void delete(Path backup) throws IOException {
+		Path archives = getArchives(backup);
+		if (Files.isDirectory(archives)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(archives)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(archives);
+		}
+		Files.deleteIfExists(backup);
+	}
+
+	/**
+	 * Returns the directory holding the backup's copies of the archive databases
+	 * @param backup - Main database's backup
+	 * @return archives
+	 */
+	private static Path getArchives(Path backup) {
+		String name = backup.getFileName().toString();
+		return backup.resolveSibling(name.substring(0, name.length() - SUFFIX.length()) + ARCHIVES_SUFFIX);
+	}
+}
@@ -0,0 +1,122 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the balance changes of the accounts touched by a commit
+ * Changes to the same account are merged so each account's row is updated once when they're written
+ * Every change is checked against the account's stored scale as it's recorded, so writing them can't fail on it
+ * @author pogegril
+ */
+class BalanceChanges {
+
+	/**
+	 * Net change of a single account's balance
+	 * Amounts are kept as decimals and converted with the latest stored scale when written,
+	 * since rescaling an account only ever makes its scale greater
+	 */
+	private static class Change {
+		private boolean absolute;
+		private BigDecimal amount;
+		private int scale;
+
+		private Change(boolean absolute, BigDecimal amount, int scale) {
+			this.absolute = absolute;
+			this.amount = amount;
+			this.scale = scale;
+		}
+	}
+
+	private final Map<Integer, Change> changes = new LinkedHashMap<Integer, Change>();
+
+	/**
+	 * Adds an amount to the account's balance
+	 * Amounts that don't fit the stored scale are rejected here, while the change can still be rolled back
+	 * @param id - Account ID
+	 * @param amount - Amount to add
+	 * @param scale - Account's stored scale
+	 */
+	void add(int id, BigDecimal amount, int scale) {
+		FixedPoint.toMinorUnits(amount, scale);
+		Change change = this.changes.get(id);
+		if (change == null) {
+			this.changes.put(id, new Change(false, amount, scale));
+		} else {
+			change.amount = change.amount.add(amount);
+			change.scale = scale;
+		}
+	}
+
+	/**
+	 * Replaces the account's balance discarding its previous changes
+	 * @param id - Account ID
+	 * @param balance - New balance
+	 * @param scale - Account's stored scale
+	 */
+	void set(int id, BigDecimal balance, int scale) {
+		FixedPoint.toMinorUnits(balance, scale);
+		this.changes.put(id, new Change(true, balance, scale));
+	}
+
+	/**
+	 * Merges later changes into these ones
+	 * @param later - Changes made after these ones
+	 */
+	void merge(BalanceChanges later) {
+		for (Map.Entry<Integer, Change> entry : later.changes.entrySet()) {
+			Change change = entry.getValue();
+			if (change.absolute) {
+				set(entry.getKey(), change.amount, change.scale);
+			} else {
+				add(entry.getKey(), change.amount, change.scale);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether there are no changes
+	 * @return isEmpty?
+	 */
+	boolean isEmpty() {
+		return this.changes.isEmpty();
+	}
+
+	/**
+	 * Forgets every change
+	 */
+	void clear() {
+		this.changes.clear();
+	}
+
+	/**
+	 * Returns the changes as journal entries with one entry per account
+	 * @return entries
+	 */
+	List<JournalEntry> toEntries() {
+		List<JournalEntry> entries = new ArrayList<JournalEntry>();
+		for (Map.Entry<Integer, Change> entry : this.changes.entrySet()) {
+			Change change = entry.getValue();
+			if (change.absolute) {
+				entries.add(JournalEntry.setBalance(entry.getKey(), change.amount, change.scale));
+			} else if (change.amount.signum() != 0) {
+				entries.add(JournalEntry.addToBalance(entry.getKey(), change.amount, change.scale));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes the changes with one update per account
+	 * @param statements - Statement cache of the JDBC writer connection
+	 */
+	void write(StatementCache statements) throws SQLException {
+		for (JournalEntry entry : toEntries()) {
+			entry.run(statements);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Keeps the program's database connections open for its whole lifetime
+ * A single writer connection is shared by every DAO while an optional
+ * small pool of read-only connections serves loading queries
+ * Each connection carries its own statement cache which is dropped along with it
+ * @author pogegril
+ */
+public class ConnectionManager {
+
+	// Seconds to wait on a connection's health check
+	private static final int VALIDATION_TIMEOUT = 2;
+
+	private final String url;
+	private final int maxReaders;
+	private final Deque<Connection> idleReaders;
+	private final Map<Connection, StatementCache> caches;
+	private DurabilityProfile profile;
+	private Connection writer;
+	private int openReaders;
+	private boolean closed;
+
+	/**
+	 * Creates a connection manager for the received database
+	 * Connections are only opened once they're first requested
+	 * @param url - JDBC database url
+	 * @param maxReaders - Maximum number of read connections (0 to share the writer)
+	 */
+	public ConnectionManager(String url, int maxReaders) {
+		if (maxReaders < 0) { throw new IllegalArgumentException("Number of read connections must not be negative."); }
+		this.url = url;
+		this.maxReaders = maxReaders;
+		this.idleReaders = new ArrayDeque<Connection>();
+		this.caches = new IdentityHashMap<Connection, StatementCache>();
+	}
+
+	/**
+	 * Returns the shared writer connection
+	 * Reopens the connection if it failed its health check
+	 * The connection must not be closed by the caller
+	 * @return writer
+	 */
+	public synchronized Connection getWriter() throws SQLException {
+		checkOpen();
+		if (this.writer == null || !isHealthy(this.writer)) {
+			closeQuietly(this.writer);
+			this.writer = DriverManager.getConnection(this.url);
+			if (this.profile != null) {
+				this.profile.apply(this.writer, false);
+			}
+		}
+		return this.writer;
+	}
+
+	/**
+	 * Applies the durability profile to every open connection and the ones opened from now on
+	 * Must not be called while a connection is in the middle of a transaction
+	 * @param profile - Durability profile
+	 */
+	public synchronized void setProfile(DurabilityProfile profile) throws SQLException {
+		this.profile = profile;
+		if (this.writer != null) {
+			profile.apply(this.writer, false);
+		}
+		for (Connection reader : this.idleReaders) {
+			profile.apply(reader, true);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of read connections
+	 * Readers are shared with the writer when it's 0
+	 * @return maxReaders
+	 */
+	public int getMaxReaders() {
+		return this.maxReaders;
+	}
+
+	/**
+	 * Returns the statement cache bound to one of the manager's connections
+	 * @param connection - Writer or borrowed reader
+	 * @return statements
+	 */
+	public synchronized StatementCache getStatements(Connection connection) {
+		return this.caches.computeIfAbsent(connection, StatementCache::new);
+	}
+
+	/**
+	 * Borrows a read-only connection from the pool
+	 * Waits for a connection to be released if all of them are in use
+	 * Must be returned with releaseReader once finished
+	 * @return reader
+	 */
+	public synchronized Connection acquireReader() throws SQLException {
+		if (this.maxReaders == 0) {
+			return getWriter();
+		}
+
+		while (true) {
+			checkOpen();
+			Connection reader = this.idleReaders.poll();
+			if (reader != null) {
+				if (isHealthy(reader)) {
+					return reader;
+				}
+				// Discards the broken connection and tries again
+				closeQuietly(reader);
+				this.openReaders--;
+			} else if (this.openReaders < this.maxReaders) {
+				reader = openReader();
+				this.openReaders++;
+				return reader;
+			} else {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for a read connection.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a borrowed read connection to the pool
+	 * @param reader - Connection received from acquireReader
+	 */
+	public synchronized void releaseReader(Connection reader) {
+		if (reader == null || reader == this.writer) {
+			return;
+		}
+		if (this.closed) {
+			closeQuietly(reader);
+			this.openReaders--;
+			return;
+		}
+		this.idleReaders.push(reader);
+		notifyAll();
+	}
+
+	/**
+	 * Closes every connection
+	 * Readers still in use are closed once they're released
+	 */
+	public synchronized void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		closeQuietly(this.writer);
+		this.writer = null;
+		while (!this.idleReaders.isEmpty()) {
+			closeQuietly(this.idleReaders.pop());
+			this.openReaders--;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Closes the connection along with its cached statements
+	 * @param connection - Connection to close
+	 */
+	private void closeQuietly(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		StatementCache statements = this.caches.remove(connection);
+		if (statements != null) {
+			statements.close();
+		}
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Opens a new read-only connection
+	 * @return reader
+	 */
+	private Connection openReader() throws SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		Connection reader = config.createConnection(this.url);
+		if (this.profile != null) {
+			this.profile.apply(reader, true);
+		}
+		return reader;
+	}
+
+	/**
+	 * Throws if the manager was already closed
+	 */
+	private void checkOpen() throws SQLException {
+		if (this.closed) {
+			throw new SQLException("Database connections were already closed.");
+		}
+	}
+
+	/**
+	 * Returns if the connection is still usable
+	 * @param connection - Connection to check
+	 * @return isHealthy?
+	 */
+	private static boolean isHealthy(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+}
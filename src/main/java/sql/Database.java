@@ -1,18 +1,24 @@
 package sql;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import bank.Account;
 import bank.Assets;
@@ -26,8 +32,26 @@ import ledger.Transaction;
 public class Database {
 
 	private static final Path DB_PATH;
+	private static final Path SNAPSHOT_PATH;
+	private static final Path JOURNAL_PATH;
+	private static final Path ARCHIVE_DIRECTORY;
+	private static final Path BACKUP_DIRECTORY;
 	private static final String DB_URL;
-	private static final String SCHEMA_PATH = "db/database.sql";
+	private static final String DURABILITY_SETTING = "durability";
+	private static final int FETCH_SIZE = Integer.getInteger("bagcheck.fetchSize", TransactionDAO.DEFAULT_FETCH_SIZE);
+	private static final int LOAD_THREADS = Integer.getInteger("bagcheck.loadThreads", Runtime.getRuntime().availableProcessors());
+	private static final int QUERY_THREADS = Integer.getInteger("bagcheck.queryThreads", 2);
+	private static final boolean JOURNAL = Boolean.parseBoolean(System.getProperty("bagcheck.journal", "true"));
+	// Number of backups kept and database pages copied per backup step
+	private static final int BACKUP_KEEP = Integer.getInteger("bagcheck.backups", 5);
+	private static final int BACKUP_PAGES = Integer.getInteger("bagcheck.backupPages", 256);
+	private static final ConnectionManager CONNECTIONS;
+	// Last IDs handed out, new rows get their IDs before being written
+	private static final AtomicInteger LAST_ACCOUNT_ID = new AtomicInteger();
+	private static final AtomicInteger LAST_TRANSACTION_ID = new AtomicInteger();
+	private static volatile WriteBehindQueue writeBehind;
+	private static QueryExecutor queries;
+	private static BackupManager backups;
 
 	static {
 		try {
@@ -35,85 +59,297 @@ public class Database {
 			Files.createDirectories(directory);
 
 			DB_PATH = directory.resolve("bagcheck.db");
+			SNAPSHOT_PATH = directory.resolve("ledger.snapshot");
+			JOURNAL_PATH = directory.resolve("journal.log");
+			ARCHIVE_DIRECTORY = directory;
+			BACKUP_DIRECTORY = directory.resolve("backups");
 
 			DB_URL = "jdbc:sqlite:" + DB_PATH.toString();
+			int readers = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+			CONNECTIONS = new ConnectionManager(DB_URL, Integer.getInteger("bagcheck.readers", readers));
 		} catch (IOException e) {
 			throw new RuntimeException("Failed to access the database directory.", e);
 		}
 	}
 
 	/**
-	 * Returns JDBC's connection
+	 * Returns the shared JDBC writer connection
+	 * The connection is kept open until the program closes the database
+	 * and must not be closed by the caller nor used while writes are queued
 	 * @return connection
 	 */
 	public static Connection getConnection() throws SQLException {
-		return DriverManager.getConnection(DB_URL);
+		return CONNECTIONS.getWriter();
 	}
 
 	/**
-	 * Static method to initialize the program's database
+	 * Returns the writer connection's statement cache
+	 * Its hit and miss counters show how often statements are reused
+	 * @return statements
 	 */
-	public static void initialize() {		
-		try (Connection connection = getConnection()) {
-				createDatabase(connection);
-		} catch (Exception e) {
-			e.printStackTrace();
+	public static StatementCache getStatementCache() throws SQLException {
+		return CONNECTIONS.getStatements(getConnection());
+	}
+
+	/**
+	 * Starts a unit of work grouping the following writes into a single database transaction
+	 * Joins the current unit if one is already open
+	 * While writes are queued the unit's writes are saved in the background once it commits
+	 * @return work
+	 */
+	public static UnitOfWork begin() throws SQLException {
+		WriteBehindQueue queue = writeBehind;
+		return queue == null ? UnitOfWork.begin(getStatementCache()) : UnitOfWork.defer(queue);
+	}
+
+	/**
+	 * Starts saving committed units of work on a background writer thread
+	 * The program's changes apply in memory immediately and failed writes are passed to the handler
+	 * Unless disabled with the bagcheck.journal system property, units are appended to the operation journal
+	 * as they commit and compacted into the database periodically
+	 * @param handler - Receives the units that failed to save on the writer thread
+	 */
+	public static synchronized void startWriteBehind(Consumer<WriteFailure> handler) {
+		if (writeBehind == null) {
+			Journal journal = null;
+			if (JOURNAL) {
+				try {
+					journal = new Journal(JOURNAL_PATH, getJournalSequence());
+				} catch (IOException | SQLException e) {
+					// Units are then saved straight into the database
+					e.printStackTrace();
+				}
+			}
+			writeBehind = new WriteBehindQueue(CONNECTIONS, journal);
 		}
+		writeBehind.setFailureHandler(handler);
 	}
 
 	/**
-	 * Creates a database file if non existant
-	 * @param connection - JDBC's connection
+	 * Runs a reporting query in the background on a read connection
+	 * Queued writes are saved first so the query sees every change committed before it ran
+	 * @param query - Read-only query
+	 * @return result - Query's future result
 	 */
-	private static void createDatabase(Connection connection) throws IOException, SQLException {
-		// Loading Schema
-		InputStream inStream = Database.class.getClassLoader().getResourceAsStream(SCHEMA_PATH);
-		if (inStream == null) {
-			throw new RuntimeException("Database Schema not found.");
+	public static synchronized <T> CompletableFuture<T> query(QueryExecutor.Query<T> query) {
+		if (queries == null) {
+			queries = new QueryExecutor(CONNECTIONS, QUERY_THREADS, Database::flush);
 		}
-		
-		// Reading Schema
-		StringBuilder schema = new StringBuilder();
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inStream))) {
-			String line;
-			while ((line = reader.readLine()) != null) {
-				schema.append(line).append("\n");
-			}
+		return queries.submit(query);
+	}
+
+	/**
+	 * Returns the net flow by currency of the transactions between the received dates
+	 * Summed by the database in the background instead of loading the transactions
+	 * @param from - First date
+	 * @param to - Last date
+	 * @return flow - Future net amount by currency ID
+	 */
+	public static CompletableFuture<BigDecimal[]> getAssetsFlow(LocalDate from, LocalDate to) {
+		return query(statements -> new TransactionDAO(statements).getFlowByCurrency(from, to));
+	}
+
+	/**
+	 * Returns each account's saved balance along with its opening balance and the sum of its transactions
+	 * Queued writes are saved first, archived years included
+	 * @return balances - { Saved balance, Opening balance, Transactions' sum } by account ID
+	 */
+	public static Map<Integer, BigDecimal[]> getReconciliation() throws SQLException {
+		List<Map<Integer, BigDecimal[]>> balances = new ArrayList<Map<Integer, BigDecimal[]>>(1);
+		read(statements -> balances.add(new AccountDAO(statements).getReconciliation()));
+		return balances.get(0);
+	}
+
+	/**
+	 * Backs the database up in the background while the program keeps running
+	 * Queued writes are saved first and only the newest backups are kept
+	 * Every backup keeps its own copy of the archived years, unchanged ones are hard linked to the previous backup
+	 * @return backup - Future path of the new backup
+	 */
+	public static synchronized CompletableFuture<Path> backup() {
+		if (backups == null) {
+			backups = new BackupManager(CONNECTIONS, BACKUP_DIRECTORY, ARCHIVE_DIRECTORY, BACKUP_KEEP, BACKUP_PAGES, Database::flush);
+		}
+		return backups.submit();
+	}
+
+	/**
+	 * Waits until every queued write has been saved
+	 */
+	public static void flush() {
+		WriteBehindQueue queue = writeBehind;
+		if (queue != null) {
+			queue.flush();
 		}
+	}
+
+	/**
+	 * Static method to initialize the program's database
+	 * Failing to migrate or recover the database fails the startup, nothing must run over it
+	 */
+	public static void initialize() throws IOException, SQLException {
+		Migrations.migrate(getConnection());
+		CONNECTIONS.setProfile(loadDurabilityProfile());
+		recoverJournal();
 
-		// Building Database
-		try (Statement statement = connection.createStatement()) {
-			String[] statements = schema.toString().split(";");
-			for (String line : statements) {
-				if (!line.trim().isEmpty()) {
-					statement.execute(line);
+		StatementCache statements = getStatementCache();
+		// Deleted accounts' IDs are never reused since archived years may still hold their transactions
+		LAST_ACCOUNT_ID.set(new AccountDAO(statements).getMaxID());
+		// Archived transactions' IDs are never reused
+		LAST_TRANSACTION_ID.set(Math.max(new TransactionDAO(statements).getMaxID(), new ArchiveDAO(statements).getMaxID()));
+	}
+
+	/**
+	 * Compacts the units left in the operation journal by a program that didn't close properly
+	 * Units after the last compacted sequence number are replayed in order, each inside its own savepoint
+	 */
+	private static void recoverJournal() throws IOException, SQLException {
+		if (!Files.isRegularFile(JOURNAL_PATH)) {
+			return;
+		}
+		Connection connection = getConnection();
+		StatementCache statements = getStatementCache();
+		try (Journal journal = new Journal(JOURNAL_PATH, getJournalSequence())) {
+			List<byte[]> records = new ArrayList<byte[]>();
+			journal.forEachRecord(getJournalSequence(), (sequence, record) -> records.add(record));
+			if (!records.isEmpty()) {
+				connection.setAutoCommit(false);
+				try (Statement savepoint = connection.createStatement()) {
+					for (byte[] record : records) {
+						savepoint.execute("SAVEPOINT unit");
+						try {
+							for (JournalEntry entry : JournalEntry.decode(record)) {
+								entry.run(statements);
+							}
+							savepoint.execute("RELEASE unit");
+						} catch (IOException | SQLException | RuntimeException e) {
+							savepoint.execute("ROLLBACK TO unit");
+							savepoint.execute("RELEASE unit");
+							e.printStackTrace();
+						}
+					}
+					new SettingsDAO(statements).set(WriteBehindQueue.SEQUENCE_SETTING, Long.toString(journal.getLastSequence()));
+					connection.commit();
+				} catch (SQLException e) {
+					connection.rollback();
+					throw e;
+				} finally {
+					connection.setAutoCommit(true);
 				}
 			}
+			journal.reset();
 		}
 	}
 
+	/**
+	 * Returns the last journal sequence number compacted into the database
+	 * @return sequence
+	 */
+	private static long getJournalSequence() throws SQLException {
+		String sequence = new SettingsDAO(getStatementCache()).get(WriteBehindQueue.SEQUENCE_SETTING);
+		return sequence == null ? 0 : Long.parseLong(sequence);
+	}
+
+	/**
+	 * Returns the selected durability profile
+	 * The bagcheck.durability system property takes priority over the saved setting
+	 * @return profile
+	 */
+	private static DurabilityProfile loadDurabilityProfile() throws SQLException {
+		String name = System.getProperty("bagcheck.durability");
+		if (name == null) {
+			name = new SettingsDAO(getStatementCache()).get(DURABILITY_SETTING);
+		}
+		if (name == null) {
+			return DurabilityProfile.DEFAULT;
+		}
+
+		try {
+			return DurabilityProfile.getByName(name);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			return DurabilityProfile.DEFAULT;
+		}
+	}
+
+	/**
+	 * Saves any queued writes and closes every open database connection
+	 * To be called once when the program exits
+	 */
+	public static synchronized void close() {
+		if (backups != null) {
+			backups.close();
+			backups = null;
+		}
+		if (queries != null) {
+			queries.close();
+			queries = null;
+		}
+		if (writeBehind != null) {
+			writeBehind.close();
+			writeBehind = null;
+		}
+		CONNECTIONS.close();
+	}
+
 	/**
 	 * Loads the received ledger with the database's contents
+	 * The whole history is loaded, so every archived year's database is read as well,
+	 * archiving only keeps memory and startup time down for ledgers bounded to their resident months
 	 * @param ledger - Empty ledger
 	 */
 	public static void loadLedger(Ledger ledger) throws SQLException {
-		Assets assets = ledger.getAssets();
-		try (Connection connection = getConnection()) {
-			AccountDAO accDao = new AccountDAO(connection);
-			TransactionDAO transDao = new TransactionDAO(connection);
-
-			for (Account account : accDao.getAccounts()) {
-				if (!assets.loadAccount(account)) {
-					throw new IllegalStateException("Duplicate account entry error.");
-				}
+		// The snapshot saved on the last clean exit is used while the database hasn't changed since
+		try {
+			if (new LedgerSnapshot(SNAPSHOT_PATH).read(ledger, getChangeCount())) {
+				return;
 			}
+		} catch (IOException | SQLException e) {
+			e.printStackTrace();
+		}
 
-			for (Transaction transaction : transDao.getTransactions()) {
-				if (!ledger.loadTransaction(transaction)) {
-					throw new IllegalStateException("Duplicate transaction entry error.");
-				}
+		// Large tables are read in parallel partitions on the read connections
+		new LedgerLoader(CONNECTIONS, LOAD_THREADS, FETCH_SIZE).load(ledger);
+		forEachArchivedTransaction(LocalDate.MIN, LocalDate.MAX, transaction -> {
+			if (!ledger.loadTransaction(transaction)) {
+				throw new IllegalStateException("Duplicate transaction entry error.");
 			}
+		});
+	}
+
+	/**
+	 * Saves a snapshot of the ledger to speed up the next startup
+	 * To be called on a clean exit, memory-bounded ledgers aren't saved since they're incomplete
+	 * Skipped once a queued write failed, since the ledger may still hold its reverted changes
+	 * @param ledger - User's ledger
+	 */
+	public static void saveSnapshot(Ledger ledger) throws IOException, SQLException {
+		if (ledger.isBounded()) {
+			return;
 		}
+		// The snapshot must match the saved database
+		flush();
+		WriteBehindQueue queue = writeBehind;
+		if (queue != null && queue.hasFailed()) {
+			// Units that failed to save may not be reverted in the ledger yet, it's loaded from the database instead
+			System.err.println("Some changes failed to save, the ledger snapshot was skipped.");
+			return;
+		}
+		new LedgerSnapshot(SNAPSHOT_PATH).write(ledger, getChangeCount());
+	}
+
+	/**
+	 * Returns the number of changes ever made to the accounts and transactions tables
+	 * @return changeCount
+	 */
+	private static long getChangeCount() throws SQLException {
+		long[] count = new long[1];
+		read(statements -> {
+			try (ResultSet result = statements.prepare("SELECT counter FROM changes WHERE id = 1").executeQuery()) {
+				count[0] = result.next() ? result.getLong(1) : -1;
+			}
+		});
+		return count[0];
 	}
 
 	/**
@@ -124,9 +360,12 @@ public class Database {
 	 */
 	public static void loadLedger(Ledger ledger, LocalDate date) throws SQLException {
 		Assets assets = ledger.getAssets();
-		try (Connection connection = getConnection()) {
-			AccountDAO accDao = new AccountDAO(connection);
-			TransactionDAO transDao = new TransactionDAO(connection);
+		Connection connection = CONNECTIONS.acquireReader();
+		try {
+			StatementCache statements = CONNECTIONS.getStatements(connection);
+			AccountDAO accDao = new AccountDAO(statements);
+			TransactionDAO transDao = new TransactionDAO(statements);
+			transDao.setFetchSize(FETCH_SIZE);
 
 			for (Account account : accDao.getAccounts()) {
 				if (!assets.loadAccount(account)) {
@@ -134,39 +373,145 @@ public class Database {
 				}
 			}
 
-			for (Transaction transaction : transDao.getTransactions(date)) {
+			// Transactions go straight from the cursor into the ledger
+			transDao.forEachTransaction(date, transaction -> {
 				if (!ledger.loadTransaction(transaction)) {
 					throw new IllegalStateException("Duplicate transaction entry error.");
 				}
+			});
+		} finally {
+			CONNECTIONS.releaseReader(connection);
+		}
+		forEachArchivedTransaction(date, LocalDate.MAX, transaction -> {
+			if (!ledger.loadTransaction(transaction)) {
+				throw new IllegalStateException("Duplicate transaction entry error.");
+			}
+		});
+		ledger.markLoadedSince(date);
+	}
+
+	/**
+	 * Passes every transaction between the received dates to the consumer
+	 * Archived years within the range are attached and read after the main database
+	 * Queued writes are saved first so the read includes every committed change
+	 * @param from - First date
+	 * @param to - Last date
+	 * @param consumer - Receives each transaction
+	 */
+	public static void loadTransactions(LocalDate from, LocalDate to, Consumer<Transaction> consumer) throws SQLException {
+		read(statements -> {
+			TransactionDAO transDao = new TransactionDAO(statements);
+			transDao.setFetchSize(FETCH_SIZE);
+			transDao.forEachTransaction(from, to, consumer);
+		});
+		forEachArchivedTransaction(from, to, consumer);
+	}
+
+	/**
+	 * Returns the dates of the oldest and newest recorded transactions, archived ones included
+	 * Returns null if there are no recorded transactions
+	 * @return range
+	 */
+	public static LocalDate[] getDateRange() throws SQLException {
+		LocalDate[][] range = new LocalDate[2][];
+		read(statements -> {
+			range[0] = new TransactionDAO(statements).getDateRange();
+			range[1] = new ArchiveDAO(statements).getDateRange();
+		});
+		if (range[0] == null || range[1] == null) {
+			return range[0] == null ? range[1] : range[0];
+		}
+		LocalDate first = range[0][0].isBefore(range[1][0]) ? range[0][0] : range[1][0];
+		LocalDate last = range[0][1].isAfter(range[1][1]) ? range[0][1] : range[1][1];
+		return new LocalDate[] { first, last };
+	}
+
+	/**
+	 * Moves a closed year's transactions into its own archive database
+	 * The archive is only attached again when a read reaches the year,
+	 * the year's per-account totals stay in the main database
+	 * A ledger loading the whole history still reads every archive on startup
+	 * @param year - Year before the current one
+	 * @return archived - Number of transactions moved
+	 */
+	public static synchronized int archiveYear(int year) throws SQLException {
+		if (year >= LocalDate.now().getYear()) { throw new IllegalArgumentException("Only closed years can be archived."); }
+		// Archives can't be attached while the writer is inside a transaction
+		flush();
+		return new ArchiveDAO(getStatementCache()).archive(year, getArchivePath(year));
+	}
+
+	/**
+	 * Archives every closed year before the received one still in the main database
+	 * @param year - First year kept in the main database
+	 * @return archived - Number of transactions moved
+	 */
+	public static int archiveYearsBefore(int year) throws SQLException {
+		LocalDate[][] range = new LocalDate[1][];
+		read(statements -> range[0] = new TransactionDAO(statements).getDateRange());
+		if (range[0] == null) {
+			return 0;
+		}
+
+		int archived = 0;
+		int last = Math.min(year, LocalDate.now().getYear()) - 1;
+		for (int closed = range[0][0].getYear(); closed <= last; closed++) {
+			archived += archiveYear(closed);
+		}
+		return archived;
+	}
+
+	/**
+	 * Passes every archived transaction between the received dates to the consumer
+	 * Only the archives of the years reached by the range are attached, on a read connection
+	 * @param from - First date
+	 * @param to - Last date
+	 * @param consumer - Receives each transaction
+	 */
+	private static void forEachArchivedTransaction(LocalDate from, LocalDate to, Consumer<Transaction> consumer) throws SQLException {
+		List<Integer> years = new ArrayList<Integer>();
+		read(statements -> years.addAll(new ArchiveDAO(statements).getYears(from, to)));
+		if (years.isEmpty()) {
+			return;
+		}
+
+		Connection connection = CONNECTIONS.acquireReader();
+		try {
+			ArchiveDAO archives = new ArchiveDAO(CONNECTIONS.getStatements(connection));
+			for (int year : years) {
+				archives.forEachTransaction(getArchivePath(year), from, to, FETCH_SIZE, consumer);
 			}
+		} finally {
+			CONNECTIONS.releaseReader(connection);
 		}
 	}
 
+	/**
+	 * Returns the archive database of the year
+	 * @param year - Archived year
+	 * @return path
+	 */
+	private static Path getArchivePath(int year) {
+		return ARCHIVE_DIRECTORY.resolve(ArchiveDAO.FILE_PREFIX + year + ArchiveDAO.FILE_SUFFIX);
+	}
+
 	/**
 	 * Writes an account into the database
+	 * Assigns the account its new unique ID
 	 * @param account - Account to save
 	 */
 	public static void addAccount(Account account) throws SQLException {
-		try (Connection connection = getConnection()) {
-			AccountDAO accDao = new AccountDAO(connection);
-			accDao.add(account);
-		}
+		account.setID(LAST_ACCOUNT_ID.incrementAndGet());
+		write(JournalEntry.addAccount(account));
 	}
 
 	/**
 	 * Deletes an account from the database
+	 * Its transactions are deleted along with it by a single statement
 	 * @param id - Account's id
 	 */
 	public static void remAccount(int id) throws SQLException {
-		try (Connection connection = getConnection()) {
-			// Deletes any leftover database transactions currently not loaded by the program
-			TransactionDAO transDao = new TransactionDAO(connection);
-			transDao.deleteByAccount(id);
-			AccountDAO accDao = new AccountDAO(connection);
-			if (accDao.delete(id) == 0) {
-				throw new IllegalStateException("Attempted to delete non-existant account.");
-			}
-		}
+		write(JournalEntry.removeAccount(id));
 	}
 
 	/**
@@ -175,10 +520,7 @@ public class Database {
 	 * @param name - New name
 	 */
 	public static void updateName(int id, String name) throws SQLException {
-		try (Connection connection = getConnection()) {
-			AccountDAO accDao = new AccountDAO(connection);
-			accDao.updateName(id, name);
-		}
+		write(JournalEntry.updateName(id, name));
 	}
 
 	/**
@@ -187,45 +529,129 @@ public class Database {
 	 * @param currency_id - New currency ID
 	 */
 	public static void updateCurrency(int id, int currency_id) throws SQLException {
-		try (Connection connection = getConnection()) {
-			AccountDAO accDao = new AccountDAO(connection);
-			accDao.updateCurrency(id, currency_id);
-		}
+		write(JournalEntry.updateCurrency(id, currency_id));
 	}
 
 	/**
-	 * Connects the AccountDAO to update an account's database entry's balance
+	 * Replaces an account's saved balance when the current unit of work commits
 	 * @param id - Account ID
 	 * @param balance - Updated balance
+	 * @param scale - Account's stored scale
+	 */
+	public static void updateBalance(int id, BigDecimal balance, int scale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			work.setBalance(id, balance, scale);
+			work.commit();
+		}
+	}
+
+	/**
+	 * Adds an amount to an account's saved balance when the current unit of work commits
+	 * Changes to the same account are saved with a single update per commit
+	 * @param id - Account ID
+	 * @param amount - Amount to add
+	 * @param scale - Account's stored scale
+	 */
+	public static void addToBalance(int id, BigDecimal amount, int scale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			work.addToBalance(id, amount, scale);
+			work.commit();
+		}
+	}
+
+	/**
+	 * Converts an account's stored balance and transactions to a greater scale
+	 * @param id - Account ID
+	 * @param scale - Current stored scale
+	 * @param newScale - Greater stored scale
 	 */
-	public static void updateBalance(int id, BigDecimal balance) throws SQLException {
-		try (Connection connection = getConnection()) {
-			AccountDAO accDao = new AccountDAO(connection);
-			accDao.updateBalance(id, balance);
+	public static void rescaleAccount(int id, int scale, int newScale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			// Pending balance changes are still in the current scale
+			work.writeBalances();
+			work.write(JournalEntry.rescaleAccount(id, scale, newScale));
+			work.commit();
 		}
 	}
 
 	/**
 	 * Writes a transaction's info to the database
+	 * Assigns the transaction its new unique ID
 	 * @param transaction - Transaction to save
+	 * @param scale - Stored scale of the transaction's account
 	 */
-	public static void addTransaction(Transaction transaction) throws SQLException {
-		try (Connection connection = getConnection()) {
-			TransactionDAO transDao = new TransactionDAO(connection);
-			transDao.add(transaction);
-		}
+	public static void addTransaction(Transaction transaction, int scale) throws SQLException {
+		transaction.setID(LAST_TRANSACTION_ID.incrementAndGet());
+		write(JournalEntry.addTransactions(Collections.singletonList(transaction), Collections.singletonMap(transaction.getAccountID(), scale)));
 	} 
 
 	/**
-	 * Deletes a transaction from the database
-	 * @param id - Transaction's id
+	 * Writes all of the transactions and their accounts' updated balances within a single database transaction
+	 * Assigns every transaction its new unique ID, nothing is saved if any of the writes fails
+	 * @param transactions - Transactions to save
+	 * @param deltas - Net value of the transactions by account, must include every transaction's account
 	 */
-	public static void remTransaction(int id) throws SQLException {
-		try (Connection connection = getConnection()) {
-			TransactionDAO transDao = new TransactionDAO(connection);
-			if (transDao.delete(id) == 0) {
-				throw new IllegalStateException("Attempted to delete non-existant transaction.");
+	public static void addTransactions(Collection<Transaction> transactions, Map<Account, BigDecimal> deltas) throws SQLException {
+		List<Transaction> toSave = new ArrayList<Transaction>(transactions);
+		for (Transaction transaction : toSave) {
+			transaction.setID(LAST_TRANSACTION_ID.incrementAndGet());
+		}
+
+		Map<Integer, Integer> scales = new HashMap<Integer, Integer>();
+		for (Account account : deltas.keySet()) {
+			scales.put(account.getID(), account.getScale());
+		}
+
+		try (UnitOfWork work = begin()) {
+			work.write(JournalEntry.addTransactions(toSave, scales));
+			for (Map.Entry<Account, BigDecimal> delta : deltas.entrySet()) {
+				Account account = delta.getKey();
+				work.addToBalance(account.getID(), delta.getValue(), account.getScale());
 			}
+			work.commit();
+		}
+	}
+
+	/**
+	 * Deletes a transaction from the database
+	 * Transactions of archived years are marked as removed and taken out of their year's totals
+	 * @param transaction - Transaction to delete
+	 * @param scale - Stored scale of the transaction's account
+	 */
+	public static void remTransaction(Transaction transaction, int scale) throws SQLException {
+		write(JournalEntry.removeTransaction(transaction, scale));
+	}
+
+	/**
+	 * Runs the write within the current unit of work
+	 * Starts its own unit if there's none open
+	 * @param entry - Database write
+	 */
+	private static void write(JournalEntry entry) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			work.write(entry);
+			work.commit();
+		}
+	}
+
+	/**
+	 * Runs the read on the writer connection
+	 * While writes are queued it waits for them to be saved and runs on a read connection instead
+	 * @param operation - Database read
+	 */
+	private static void read(UnitOfWork.Operation operation) throws SQLException {
+		WriteBehindQueue queue = writeBehind;
+		if (queue == null) {
+			operation.run(getStatementCache());
+			return;
+		}
+
+		queue.flush();
+		Connection connection = CONNECTIONS.acquireReader();
+		try {
+			operation.run(CONNECTIONS.getStatements(connection));
+		} finally {
+			CONNECTIONS.releaseReader(connection);
 		}
 	}
 }
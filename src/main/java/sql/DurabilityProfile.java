@@ -0,0 +1,76 @@
+package sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Enum listing the database's durability and performance profiles
+ * Each profile sets SQLite's journal mode, sync level, memory mapping, page cache and temporary storage
+ * @author pogegril
+ */
+public enum DurabilityProfile {
+
+	// Rollback journal fully synced on every commit, SQLite's defaults
+	SAFE("DELETE", "FULL", 0, -2000, "DEFAULT"),
+	// Write-ahead log only synced on checkpoints, survives program crashes but not power losses
+	BALANCED("WAL", "NORMAL", 64L * 1024 * 1024, -8000, "DEFAULT"),
+	// Write-ahead log never synced, recent commits may be lost on a system crash
+	FAST("WAL", "OFF", 256L * 1024 * 1024, -32000, "MEMORY");
+
+	// Faster profiles trade durability away so they're only used when explicitly selected
+	public static final DurabilityProfile DEFAULT = SAFE;
+
+	private final String journalMode, synchronous, tempStore;
+	private final long mmapSize;
+	private final int cacheSize;
+
+	/**
+	 * Builds the profile with its pragma values
+	 * @param journalMode - journal_mode pragma
+	 * @param synchronous - synchronous pragma
+	 * @param mmapSize - mmap_size pragma in bytes
+	 * @param cacheSize - cache_size pragma (negative values are in KiB)
+	 * @param tempStore - temp_store pragma
+	 */
+	DurabilityProfile(String journalMode, String synchronous, long mmapSize, int cacheSize, String tempStore) {
+		this.journalMode = journalMode;
+		this.synchronous = synchronous;
+		this.mmapSize = mmapSize;
+		this.cacheSize = cacheSize;
+		this.tempStore = tempStore;
+	}
+
+	/**
+	 * Applies the profile's pragmas to the connection
+	 * The journal mode is stored in the database file so it's only set by writers
+	 * @param connection - JDBC connection
+	 * @param readOnly - Whether the connection is read-only
+	 */
+	public void apply(Connection connection, boolean readOnly) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			if (!readOnly) {
+				statement.execute("PRAGMA journal_mode = " + this.journalMode);
+			}
+			statement.execute("PRAGMA synchronous = " + this.synchronous);
+			statement.execute("PRAGMA mmap_size = " + this.mmapSize);
+			statement.execute("PRAGMA cache_size = " + this.cacheSize);
+			statement.execute("PRAGMA temp_store = " + this.tempStore);
+		}
+	}
+
+	/**
+	 * Returns the profile by its name
+	 * Not case-sensitive
+	 * @param name - Profile's name
+	 * @return profile
+	 */
+	public static DurabilityProfile getByName(String name) {
+		for (DurabilityProfile profile : values()) {
+			if (profile.name().equalsIgnoreCase(name.trim())) {
+				return profile;
+			}
+		}
+		throw new IllegalArgumentException("Unknown durability profile: " + name);
+	}
+}
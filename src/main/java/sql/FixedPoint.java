@@ -0,0 +1,37 @@
+package sql;
+
+import java.math.BigDecimal;
+
+/**
+ * Converts money between the program's decimal amounts and the database's integer minor units
+ * The scale is stored per account rather than per currency, so accounts of one currency may keep more decimals
+ * @author pogegril
+ */
+public class FixedPoint {
+
+	private FixedPoint() {}
+
+	/**
+	 * Returns the amount as an integer of minor units
+	 * @param amount - Decimal amount
+	 * @param scale - Number of decimal places of the minor unit
+	 * @return minorUnits
+	 */
+	public static long toMinorUnits(BigDecimal amount, int scale) {
+		try {
+			return amount.movePointRight(scale).longValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("Amount " + amount + " doesn't fit in " + scale + " decimal places.", e);
+		}
+	}
+
+	/**
+	 * Returns the decimal amount of an integer of minor units
+	 * @param minorUnits - Amount in minor units
+	 * @param scale - Number of decimal places of the minor unit
+	 * @return amount
+	 */
+	public static BigDecimal fromMinorUnits(long minorUnits, int scale) {
+		return BigDecimal.valueOf(minorUnits, scale);
+	}
+}
@@ -0,0 +1,167 @@
+package sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of the units of work waiting to be compacted into the database
+ * Each record holds a unit's journal entries under a monotonically increasing sequence number
+ * and is only appended, records are synced to disk once per appended group
+ * @author pogegril
+ */
+public class Journal implements AutoCloseable {
+
+	// Sequence number, record length and checksum around each record
+	private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+	private static final int TRAILER_SIZE = Integer.BYTES;
+
+	private final FileChannel channel;
+	private long lastSequence;
+
+	/**
+	 * Opens the journal file creating it if needed
+	 * A partially written record left by a crash is cut off
+	 * @param path - Journal file
+	 * @param compactedSequence - Last sequence number already compacted into the database
+	 */
+	public Journal(Path path, long compactedSequence) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.lastSequence = compactedSequence;
+		long end = read(0, (sequence, record) -> this.lastSequence = Math.max(this.lastSequence, sequence));
+		this.channel.truncate(end);
+		this.channel.position(end);
+	}
+
+	/**
+	 * Returns the sequence number of the last appended record
+	 * @return sequence
+	 */
+	public synchronized long getLastSequence() {
+		return this.lastSequence;
+	}
+
+	/**
+	 * Appends the records and syncs them to disk
+	 * @param records - Encoded units in order
+	 * @return sequence - Sequence number of the first record, the rest follow consecutively
+	 */
+	public synchronized long append(List<byte[]> records) throws IOException {
+		long first = this.lastSequence + 1;
+		long sequence = this.lastSequence;
+		for (byte[] record : records) {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + record.length + TRAILER_SIZE);
+			buffer.putLong(++sequence);
+			buffer.putInt(record.length);
+			buffer.put(record);
+			buffer.putInt(checksum(sequence, record));
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+		}
+		// One sync for the whole group
+		this.channel.force(false);
+		this.lastSequence = sequence;
+		return first;
+	}
+
+	/**
+	 * Passes every record still in the journal after the received sequence number to the consumer in order
+	 * Records are dropped once compacted, so it only reaches back to the last compaction
+	 * @param afterSequence - Last sequence number already seen
+	 * @param consumer - Receives each record's sequence number and contents
+	 */
+	public synchronized void forEachRecord(long afterSequence, BiConsumer<Long, byte[]> consumer) throws IOException {
+		read(afterSequence, consumer);
+	}
+
+	/**
+	 * Empties the journal once every record has been compacted into the database
+	 * Sequence numbers keep growing from the last one
+	 */
+	public synchronized void reset() throws IOException {
+		this.channel.truncate(0);
+		this.channel.position(0);
+		this.channel.force(false);
+	}
+
+	/**
+	 * Closes the journal file
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Reads the valid records from the start of the file
+	 * Stops at the first incomplete or corrupted record
+	 * @param afterSequence - Records up to this sequence number are skipped
+	 * @param consumer - Receives each record's sequence number and contents
+	 * @return end - Position after the last valid record
+	 */
+	private long read(long afterSequence, BiConsumer<Long, byte[]> consumer) throws IOException {
+		long position = 0;
+		long size = this.channel.size();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (position + HEADER_SIZE + TRAILER_SIZE <= size) {
+			header.clear();
+			readFully(header, position);
+			header.flip();
+			long sequence = header.getLong();
+			int length = header.getInt();
+			if (length < 0 || position + HEADER_SIZE + length + TRAILER_SIZE > size) {
+				break;
+			}
+
+			ByteBuffer body = ByteBuffer.allocate(length + TRAILER_SIZE);
+			readFully(body, position + HEADER_SIZE);
+			body.flip();
+			byte[] record = new byte[length];
+			body.get(record);
+			if (body.getInt() != checksum(sequence, record)) {
+				break;
+			}
+
+			if (sequence > afterSequence) {
+				consumer.accept(sequence, record);
+			}
+			position += HEADER_SIZE + length + TRAILER_SIZE;
+		}
+		return position;
+	}
+
+	/**
+	 * Fills the buffer from the file at the received position
+	 * @param buffer - Buffer to fill
+	 * @param position - File position
+	 */
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = this.channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("Unexpected end of the journal.");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Returns the checksum of a record along with its sequence number
+	 * @param sequence - Record's sequence number
+	 * @param record - Record's contents
+	 * @return checksum
+	 */
+	private static int checksum(long sequence, byte[] record) {
+		CRC32 crc = new CRC32();
+		crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence).array());
+		crc.update(record);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,303 @@
+package sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import bank.Account;
+import bank.Currency;
+import ledger.Transaction;
+
+/**
+ * A single ledger operation written to the database
+ * Entries copy the values they write when created so queued units can be
+ * written to the operation journal and replayed from it
+ * @author pogegril
+ */
+public class JournalEntry implements UnitOfWork.Operation {
+
+	/**
+	 * Enum listing the kinds of journaled operations
+	 * Types are stored by their ordinal so new ones must be added at the end
+	 */
+	enum Type {
+		ADD_ACCOUNT,
+		REMOVE_ACCOUNT,
+		UPDATE_NAME,
+		UPDATE_CURRENCY,
+		RESCALE_ACCOUNT,
+		SET_BALANCE,
+		ADD_TO_BALANCE,
+		ADD_TRANSACTIONS,
+		REMOVE_TRANSACTION
+	}
+
+	// Values of each transaction of an ADD_TRANSACTIONS entry
+	private static final int TRANSACTION_NUMBERS = 5, TRANSACTION_STRINGS = 3;
+
+	private final Type type;
+	private final long[] numbers;
+	private final String[] strings;
+
+	/**
+	 * Creates the entry
+	 * @param type - Operation
+	 * @param numbers - Operation's numeric values
+	 * @param strings - Operation's text values, may hold nulls
+	 */
+	private JournalEntry(Type type, long[] numbers, String[] strings) {
+		this.type = type;
+		this.numbers = numbers;
+		this.strings = strings;
+	}
+
+	/**
+	 * Entry adding an account with its current details
+	 * @param account - Account with its assigned ID
+	 * @return entry
+	 */
+	public static JournalEntry addAccount(Account account) {
+		long balance = FixedPoint.toMinorUnits(account.getBalance(), account.getScale());
+		return new JournalEntry(Type.ADD_ACCOUNT, new long[] { account.getID(), account.getCurrency().getID(), account.getScale(), balance }, new String[] { account.getName() });
+	}
+
+	/**
+	 * Entry deleting an account along with its transactions
+	 * @param id - Account ID
+	 * @return entry
+	 */
+	public static JournalEntry removeAccount(int id) {
+		return new JournalEntry(Type.REMOVE_ACCOUNT, new long[] { id }, new String[0]);
+	}
+
+	/**
+	 * Entry renaming an account
+	 * @param id - Account ID
+	 * @param name - New name
+	 * @return entry
+	 */
+	public static JournalEntry updateName(int id, String name) {
+		return new JournalEntry(Type.UPDATE_NAME, new long[] { id }, new String[] { name });
+	}
+
+	/**
+	 * Entry changing an account's currency
+	 * @param id - Account ID
+	 * @param currency_id - New currency ID
+	 * @return entry
+	 */
+	public static JournalEntry updateCurrency(int id, int currency_id) {
+		return new JournalEntry(Type.UPDATE_CURRENCY, new long[] { id, currency_id }, new String[0]);
+	}
+
+	/**
+	 * Entry converting an account's stored amounts to a greater scale
+	 * @param id - Account ID
+	 * @param scale - Current stored scale
+	 * @param newScale - Greater stored scale
+	 * @return entry
+	 */
+	public static JournalEntry rescaleAccount(int id, int scale, int newScale) {
+		return new JournalEntry(Type.RESCALE_ACCOUNT, new long[] { id, scale, newScale }, new String[0]);
+	}
+
+	/**
+	 * Entry replacing an account's balance
+	 * @param id - Account ID
+	 * @param balance - New balance
+	 * @param scale - Account's stored scale
+	 * @return entry
+	 */
+	public static JournalEntry setBalance(int id, BigDecimal balance, int scale) {
+		return new JournalEntry(Type.SET_BALANCE, new long[] { id, scale }, new String[] { balance.toPlainString() });
+	}
+
+	/**
+	 * Entry adding an amount to an account's balance
+	 * @param id - Account ID
+	 * @param amount - Amount to add
+	 * @param scale - Account's stored scale
+	 * @return entry
+	 */
+	public static JournalEntry addToBalance(int id, BigDecimal amount, int scale) {
+		return new JournalEntry(Type.ADD_TO_BALANCE, new long[] { id, scale }, new String[] { amount.toPlainString() });
+	}
+
+	/**
+	 * Entry adding transactions with their assigned IDs
+	 * @param transactions - Transactions to save
+	 * @param scales - Stored scale of the transactions' accounts by account ID
+	 * @return entry
+	 */
+	public static JournalEntry addTransactions(Collection<Transaction> transactions, Map<Integer, Integer> scales) {
+		long[] numbers = new long[transactions.size() * TRANSACTION_NUMBERS];
+		String[] strings = new String[transactions.size() * TRANSACTION_STRINGS];
+		int n = 0, s = 0;
+		for (Transaction transaction : transactions) {
+			int scale = scales.get(transaction.getAccountID());
+			numbers[n++] = transaction.getID();
+			numbers[n++] = transaction.getAccountID();
+			numbers[n++] = transaction.getDate().toEpochDay();
+			numbers[n++] = scale;
+			numbers[n++] = FixedPoint.toMinorUnits(transaction.getAmount(), scale);
+			strings[s++] = transaction.getName();
+			strings[s++] = transaction.getDesc();
+			strings[s++] = transaction.getTag();
+		}
+		return new JournalEntry(Type.ADD_TRANSACTIONS, numbers, strings);
+	}
+
+	/**
+	 * Entry deleting a transaction
+	 * Holds the transaction's details to take it out of its year's totals if the year was archived
+	 * @param transaction - Transaction to delete
+	 * @param scale - Stored scale of the transaction's account
+	 * @return entry
+	 */
+	public static JournalEntry removeTransaction(Transaction transaction, int scale) {
+		long amount = FixedPoint.toMinorUnits(transaction.getAmount(), scale);
+		return new JournalEntry(Type.REMOVE_TRANSACTION, new long[] { transaction.getID(), transaction.getAccountID(), transaction.getDate().toEpochDay(), amount }, new String[0]);
+	}
+
+	/**
+	 * Runs the operation on the writer connection
+	 * @param statements - Statement cache of the JDBC writer connection
+	 */
+	@Override
+	public void run(StatementCache statements) throws SQLException {
+		int id = this.numbers.length == 0 ? 0 : (int) this.numbers[0];
+		switch (this.type) {
+			case ADD_ACCOUNT: {
+				int scale = (int) this.numbers[2];
+				Account account = new Account(this.strings[0], Currency.getByID((int) this.numbers[1]), FixedPoint.fromMinorUnits(this.numbers[3], scale));
+				account.setID(id);
+				account.setScale(scale);
+				new AccountDAO(statements).add(account);
+				break;
+			}
+			case REMOVE_ACCOUNT:
+				// Deletes any leftover database transactions currently not loaded by the program
+				new TransactionDAO(statements).deleteByAccount(id);
+				new ArchiveDAO(statements).deleteByAccount(id);
+				if (new AccountDAO(statements).delete(id) == 0) {
+					throw new IllegalStateException("Attempted to delete non-existant account.");
+				}
+				break;
+			case UPDATE_NAME:
+				new AccountDAO(statements).updateName(id, this.strings[0]);
+				break;
+			case UPDATE_CURRENCY:
+				new AccountDAO(statements).updateCurrency(id, (int) this.numbers[1]);
+				break;
+			case RESCALE_ACCOUNT:
+				new TransactionDAO(statements).rescaleByAccount(id, (int) this.numbers[1], (int) this.numbers[2]);
+				new ArchiveDAO(statements).rescaleByAccount(id, (int) this.numbers[1], (int) this.numbers[2]);
+				new AccountDAO(statements).updateScale(id, (int) this.numbers[1], (int) this.numbers[2]);
+				break;
+			case SET_BALANCE:
+				new AccountDAO(statements).updateBalance(id, new BigDecimal(this.strings[0]), (int) this.numbers[1]);
+				break;
+			case ADD_TO_BALANCE:
+				new AccountDAO(statements).addToBalance(id, new BigDecimal(this.strings[0]), (int) this.numbers[1]);
+				break;
+			case ADD_TRANSACTIONS:
+				runAddTransactions(statements);
+				break;
+			case REMOVE_TRANSACTION:
+				// Transactions missing from the main database may belong to an archived year
+				if (new TransactionDAO(statements).delete(id) == 0
+						&& !new ArchiveDAO(statements).remove(id, (int) this.numbers[1], LocalDate.ofEpochDay(this.numbers[2]), this.numbers[3])) {
+					throw new IllegalStateException("Attempted to delete non-existant transaction.");
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Saves the transactions of an ADD_TRANSACTIONS entry in a single batch
+	 * @param statements - Statement cache of the JDBC writer connection
+	 */
+	private void runAddTransactions(StatementCache statements) throws SQLException {
+		List<Transaction> transactions = new ArrayList<Transaction>();
+		Map<Integer, Integer> scales = new HashMap<Integer, Integer>();
+		for (int n = 0, s = 0; n < this.numbers.length; n += TRANSACTION_NUMBERS, s += TRANSACTION_STRINGS) {
+			int accountID = (int) this.numbers[n + 1];
+			int scale = (int) this.numbers[n + 3];
+			LocalDate date = LocalDate.ofEpochDay(this.numbers[n + 2]);
+			BigDecimal amount = FixedPoint.fromMinorUnits(this.numbers[n + 4], scale);
+
+			Transaction transaction;
+			if (this.strings[s + 1] == null) {
+				transaction = new Transaction(this.strings[s], this.strings[s + 2], accountID, date, amount);
+			} else {
+				transaction = new Transaction(this.strings[s], this.strings[s + 1], this.strings[s + 2], accountID, date, amount);
+			}
+			transaction.setID((int) this.numbers[n]);
+			transactions.add(transaction);
+			scales.put(accountID, scale);
+		}
+		new TransactionDAO(statements).addAll(transactions, scales);
+	}
+
+	/**
+	 * Encodes a unit's entries into a journal record
+	 * @param entries - Unit's entries in order
+	 * @return record
+	 */
+	static byte[] encode(List<JournalEntry> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(entries.size());
+			for (JournalEntry entry : entries) {
+				out.writeByte(entry.type.ordinal());
+				out.writeInt(entry.numbers.length);
+				for (long number : entry.numbers) {
+					out.writeLong(number);
+				}
+				out.writeInt(entry.strings.length);
+				for (String string : entry.strings) {
+					out.writeBoolean(string != null);
+					if (string != null) {
+						out.writeUTF(string);
+					}
+				}
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a journal record into the unit's entries
+	 * @param record - Journal record
+	 * @return entries
+	 */
+	static List<JournalEntry> decode(byte[] record) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+			int count = in.readInt();
+			List<JournalEntry> entries = new ArrayList<JournalEntry>(count);
+			for (int i = 0; i < count; i++) {
+				Type type = Type.values()[in.readUnsignedByte()];
+				long[] numbers = new long[in.readInt()];
+				for (int n = 0; n < numbers.length; n++) {
+					numbers[n] = in.readLong();
+				}
+				String[] strings = new String[in.readInt()];
+				for (int s = 0; s < strings.length; s++) {
+					strings[s] = in.readBoolean() ? in.readUTF() : null;
+				}
+				entries.add(new JournalEntry(type, numbers, strings));
+			}
+			return entries;
+		}
+	}
+}
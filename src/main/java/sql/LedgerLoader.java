@@ -0,0 +1,138 @@
+package sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bank.Account;
+import bank.Assets;
+import ledger.Ledger;
+import ledger.Transaction;
+
+/**
+ * Loads the whole database into a ledger reading the transactions table in parallel
+ * The table is split into id ranges, each read on its own read connection into
+ * sorted day records which are then merged into the ledger in id order
+ * @author pogegril
+ */
+public class LedgerLoader {
+
+	// Tables smaller than this are read in a single partition
+	private static final long MIN_PARTITION_SIZE = 20000;
+
+	private final ConnectionManager connections;
+	private final int partitions, fetchSize;
+
+	/**
+	 * Creates a ledger loader
+	 * @param connections - Database connections
+	 * @param partitions - Maximum number of partitions read at the same time
+	 * @param fetchSize - Number of rows fetched from the database at a time
+	 */
+	public LedgerLoader(ConnectionManager connections, int partitions, int fetchSize) {
+		if (partitions <= 0) { throw new IllegalArgumentException("Number of partitions must be positive."); }
+		this.connections = connections;
+		// The writer can't be shared between threads
+		this.partitions = connections.getMaxReaders() == 0 ? 1 : Math.min(partitions, connections.getMaxReaders());
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Loads the received ledger with the database's contents
+	 * @param ledger - Empty ledger
+	 */
+	public void load(Ledger ledger) throws SQLException {
+		Assets assets = ledger.getAssets();
+		long firstID, lastID, count;
+
+		Connection connection = this.connections.acquireReader();
+		try {
+			StatementCache statements = this.connections.getStatements(connection);
+			for (Account account : new AccountDAO(statements).getAccounts()) {
+				if (!assets.loadAccount(account)) {
+					throw new IllegalStateException("Duplicate account entry error.");
+				}
+			}
+
+			PreparedStatement statement = statements.prepare("SELECT MIN(id), MAX(id), COUNT(*) FROM transactions");
+			try (ResultSet result = statement.executeQuery()) {
+				result.next();
+				firstID = result.getLong(1);
+				lastID = result.getLong(2);
+				count = result.getLong(3);
+			}
+		} finally {
+			this.connections.releaseReader(connection);
+		}
+
+		if (count == 0) {
+			return;
+		}
+
+		int partitionCount = (int) Math.max(1, Math.min(this.partitions, count / MIN_PARTITION_SIZE));
+		if (partitionCount == 1) {
+			ledger.loadRecords(readPartition(firstID, lastID));
+			return;
+		}
+
+		// Splits the id range into partitions of about the same size
+		long step = (lastID - firstID) / partitionCount + 1;
+		ExecutorService executor = Executors.newFixedThreadPool(partitionCount);
+		try {
+			List<Future<NavigableMap<LocalDate, ArrayList<Transaction>>>> results = new ArrayList<>();
+			for (long start = firstID; start <= lastID; start += step) {
+				long from = start;
+				long to = Math.min(lastID, start + step - 1);
+				results.add(executor.submit(() -> readPartition(from, to)));
+			}
+
+			for (Future<NavigableMap<LocalDate, ArrayList<Transaction>>> result : results) {
+				ledger.loadRecords(result.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while loading the ledger.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new SQLException("Failed to load the ledger.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the transactions in the id range into day records
+	 * @param firstID - First transaction id of the partition
+	 * @param lastID - Last transaction id of the partition
+	 * @return records
+	 */
+	private NavigableMap<LocalDate, ArrayList<Transaction>> readPartition(long firstID, long lastID) throws SQLException {
+		NavigableMap<LocalDate, ArrayList<Transaction>> records = new TreeMap<LocalDate, ArrayList<Transaction>>();
+		Connection connection = this.connections.acquireReader();
+		try {
+			TransactionDAO transDao = new TransactionDAO(this.connections.getStatements(connection));
+			transDao.setFetchSize(this.fetchSize);
+			transDao.forEachTransaction(firstID, lastID, transaction -> {
+				records.computeIfAbsent(transaction.getDate(), newRecords -> new ArrayList<Transaction>()).add(transaction);
+			});
+		} finally {
+			this.connections.releaseReader(connection);
+		}
+		return records;
+	}
+}
@@ -0,0 +1,283 @@
+package sql;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import bank.Account;
+import bank.Currency;
+import ledger.Ledger;
+import ledger.Transaction;
+
+/**
+ * Binary copy of a fully loaded ledger used to skip reading the database on startup
+ * Holds the accounts, a dictionary of the transactions' strings and the transactions by columns,
+ * along with the database's change count when it was written so stale snapshots are ignored
+ * @author pogegril
+ */
+public class LedgerSnapshot {
+
+	// "BGCK"
+	private static final int MAGIC = 0x4247434B;
+	private static final int VERSION = 1;
+	private static final int NO_STRING = -1;
+
+	private final Path path;
+
+	/**
+	 * Creates the snapshot stored in the received file
+	 * @param path - Snapshot file
+	 */
+	public LedgerSnapshot(Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * Writes the ledger's accounts and transactions into the snapshot file
+	 * The file is replaced at once so an interrupted write leaves the previous snapshot untouched
+	 * @param ledger - Fully loaded ledger matching the database
+	 * @param changeCount - Database's current change count
+	 */
+	public void write(Ledger ledger, long changeCount) throws IOException {
+		Map<Integer, Account> accounts = new HashMap<Integer, Account>();
+		for (Account account : ledger.getAssets().getAssets()) {
+			accounts.put(account.getID(), account);
+		}
+
+		// Transactions are laid out by columns with their strings replaced by dictionary entries
+		int count = 0;
+		for (ArrayList<Transaction> dayRecords : ledger.getLedger().values()) {
+			count += dayRecords.size();
+		}
+		int[] ids = new int[count], names = new int[count], descs = new int[count], tags = new int[count], accountIDs = new int[count];
+		long[] days = new long[count], amounts = new long[count];
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+
+		int i = 0;
+		for (ArrayList<Transaction> dayRecords : ledger.getLedger().values()) {
+			for (Transaction transaction : dayRecords) {
+				Account account = accounts.get(transaction.getAccountID());
+				if (account == null) {
+					throw new IllegalStateException("Transaction's account doesn't exist.");
+				}
+				ids[i] = transaction.getID();
+				names[i] = encode(transaction.getName(), dictionary, strings);
+				descs[i] = encode(transaction.getDesc(), dictionary, strings);
+				tags[i] = encode(transaction.getTag(), dictionary, strings);
+				accountIDs[i] = transaction.getAccountID();
+				days[i] = transaction.getDate().toEpochDay();
+				amounts[i] = FixedPoint.toMinorUnits(transaction.getAmount(), account.getScale());
+				i++;
+			}
+		}
+
+		Path temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(changeCount);
+
+			out.writeInt(accounts.size());
+			for (Account account : accounts.values()) {
+				out.writeInt(account.getID());
+				writeString(out, account.getName());
+				out.writeInt(account.getCurrency().getID());
+				out.writeInt(account.getScale());
+				out.writeLong(FixedPoint.toMinorUnits(account.getBalance(), account.getScale()));
+			}
+
+			out.writeInt(strings.size());
+			for (String string : strings) {
+				writeString(out, string);
+			}
+
+			out.writeInt(count);
+			writeColumn(out, ids);
+			writeColumn(out, names);
+			writeColumn(out, descs);
+			writeColumn(out, tags);
+			writeColumn(out, accountIDs);
+			writeColumn(out, days);
+			writeColumn(out, amounts);
+		}
+		Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads the snapshot into the empty ledger through a memory mapping of the file
+	 * Returns false leaving the ledger untouched if there's no snapshot or it doesn't match the database
+	 * @param ledger - Empty ledger
+	 * @param changeCount - Database's current change count
+	 * @return isLoaded?
+	 */
+	public boolean read(Ledger ledger, long changeCount) throws IOException, SQLException {
+		if (!Files.isRegularFile(this.path)) {
+			return false;
+		}
+
+		List<Account> accounts = new ArrayList<Account>();
+		NavigableMap<LocalDate, ArrayList<Transaction>> records = new TreeMap<LocalDate, ArrayList<Transaction>>();
+		try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != changeCount) {
+				return false;
+			}
+
+			Map<Integer, Integer> scales = new HashMap<Integer, Integer>();
+			int accountCount = buffer.getInt();
+			for (int i = 0; i < accountCount; i++) {
+				int id = buffer.getInt();
+				String name = readString(buffer);
+				Currency currency = Currency.getByID(buffer.getInt());
+				int scale = buffer.getInt();
+				Account account = new Account(name, currency, FixedPoint.fromMinorUnits(buffer.getLong(), scale));
+				account.setID(id);
+				account.setScale(scale);
+				accounts.add(account);
+				scales.put(id, scale);
+			}
+
+			String[] strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString(buffer);
+			}
+
+			// Columns are read straight from their place in the mapped file
+			int count = buffer.getInt();
+			int ids = buffer.position();
+			int names = ids + count * Integer.BYTES;
+			int descs = names + count * Integer.BYTES;
+			int tags = descs + count * Integer.BYTES;
+			int accountIDs = tags + count * Integer.BYTES;
+			int days = accountIDs + count * Integer.BYTES;
+			int amounts = days + count * Long.BYTES;
+			if (amounts + (long) count * Long.BYTES != buffer.limit()) {
+				return false;
+			}
+
+			long lastDay = Long.MIN_VALUE;
+			LocalDate date = null;
+			ArrayList<Transaction> dayRecords = null;
+			for (int i = 0; i < count; i++) {
+				long epochDay = buffer.getLong(days + i * Long.BYTES);
+				if (epochDay != lastDay) {
+					date = LocalDate.ofEpochDay(epochDay);
+					lastDay = epochDay;
+					dayRecords = records.computeIfAbsent(date, newRecords -> new ArrayList<Transaction>());
+				}
+
+				int accountID = buffer.getInt(accountIDs + i * Integer.BYTES);
+				Integer scale = scales.get(accountID);
+				if (scale == null) {
+					return false;
+				}
+				String name = strings[buffer.getInt(names + i * Integer.BYTES)];
+				int desc = buffer.getInt(descs + i * Integer.BYTES);
+				String tag = strings[buffer.getInt(tags + i * Integer.BYTES)];
+				BigDecimal amount = FixedPoint.fromMinorUnits(buffer.getLong(amounts + i * Long.BYTES), scale);
+
+				Transaction transaction;
+				if (desc == NO_STRING) {
+					transaction = new Transaction(name, tag, accountID, date, amount);
+				} else {
+					transaction = new Transaction(name, strings[desc], tag, accountID, date, amount);
+				}
+				transaction.setID(buffer.getInt(ids + i * Integer.BYTES));
+				dayRecords.add(transaction);
+			}
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			// Truncated or corrupted snapshot
+			return false;
+		}
+
+		for (Account account : accounts) {
+			if (!ledger.getAssets().loadAccount(account)) {
+				throw new IllegalStateException("Duplicate account entry error.");
+			}
+		}
+		ledger.loadRecords(records);
+		return true;
+	}
+
+	/**
+	 * Returns the string's dictionary entry adding it if it's new
+	 * @param string - String to encode, may be null
+	 * @param dictionary - Entries by string
+	 * @param strings - Strings by entry
+	 * @return entry
+	 */
+	private static int encode(String string, Map<String, Integer> dictionary, List<String> strings) {
+		if (string == null) {
+			return NO_STRING;
+		}
+		Integer entry = dictionary.get(string);
+		if (entry == null) {
+			entry = strings.size();
+			dictionary.put(string, entry);
+			strings.add(string);
+		}
+		return entry;
+	}
+
+	/**
+	 * Writes the string as its UTF-8 length and bytes
+	 * @param out - Snapshot output
+	 * @param string - String to write
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString
+	 * @param buffer - Snapshot buffer
+	 * @return string
+	 */
+	private static String readString(MappedByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a column of integers
+	 * @param out - Snapshot output
+	 * @param column - Column values
+	 */
+	private static void writeColumn(DataOutputStream out, int[] column) throws IOException {
+		for (int value : column) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Writes a column of longs
+	 * @param out - Snapshot output
+	 * @param column - Column values
+	 */
+	private static void writeColumn(DataOutputStream out, long[] column) throws IOException {
+		for (long value : column) {
+			out.writeLong(value);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import bank.Account;
+import ledger.Transaction;
+
+/**
+ * Storage behind the ledger and its assets
+ * Every change made by the program goes through its store within a unit of work,
+ * so the in-memory structures can run against a database, memory or no storage at all
+ * @author pogegril
+ */
+public interface LedgerStore {
+
+	/**
+	 * Starts a unit of work grouping the following writes
+	 * Joins the current unit if one is already open
+	 * @return work
+	 */
+	UnitOfWork begin() throws SQLException;
+
+	/**
+	 * Saves a new account and assigns it its new unique ID
+	 * @param account - Account to save
+	 */
+	void addAccount(Account account) throws SQLException;
+
+	/**
+	 * Deletes an account along with all of its transactions
+	 * @param id - Account ID
+	 */
+	void remAccount(int id) throws SQLException;
+
+	/**
+	 * Updates an account's name
+	 * @param id - Account ID
+	 * @param name - New name
+	 */
+	void updateName(int id, String name) throws SQLException;
+
+	/**
+	 * Updates an account's currency
+	 * @param id - Account ID
+	 * @param currency_id - New currency ID
+	 */
+	void updateCurrency(int id, int currency_id) throws SQLException;
+
+	/**
+	 * Replaces an account's saved balance
+	 * The opening balance is kept, so the replaced balance may drift from it and the account's transactions
+	 * @param id - Account ID
+	 * @param balance - Updated balance
+	 * @param scale - Account's stored scale
+	 */
+	void updateBalance(int id, BigDecimal balance, int scale) throws SQLException;
+
+	/**
+	 * Adds an amount to an account's saved balance
+	 * @param id - Account ID
+	 * @param amount - Amount to add
+	 * @param scale - Account's stored scale
+	 */
+	void addToBalance(int id, BigDecimal amount, int scale) throws SQLException;
+
+	/**
+	 * Converts an account's stored balance and transactions to a greater scale
+	 * @param id - Account ID
+	 * @param scale - Current stored scale
+	 * @param newScale - Greater stored scale
+	 */
+	void rescaleAccount(int id, int scale, int newScale) throws SQLException;
+
+	/**
+	 * Saves a new transaction and assigns it its new unique ID
+	 * @param transaction - Transaction to save
+	 * @param scale - Stored scale of the transaction's account
+	 */
+	void addTransaction(Transaction transaction, int scale) throws SQLException;
+
+	/**
+	 * Saves new transactions along with their accounts' updated balances
+	 * Assigns every transaction its new unique ID
+	 * @param transactions - Transactions to save
+	 * @param deltas - Net value of the transactions by account, must include every transaction's account
+	 */
+	void addTransactions(Collection<Transaction> transactions, Map<Account, BigDecimal> deltas) throws SQLException;
+
+	/**
+	 * Deletes a transaction
+	 * @param transaction - Transaction to delete
+	 * @param scale - Stored scale of the transaction's account
+	 */
+	void remTransaction(Transaction transaction, int scale) throws SQLException;
+
+	/**
+	 * Passes every saved transaction between the received dates to the consumer
+	 * @param from - First date
+	 * @param to - Last date
+	 * @param consumer - Receives each transaction
+	 */
+	void loadTransactions(LocalDate from, LocalDate to, Consumer<Transaction> consumer) throws SQLException;
+
+	/**
+	 * Returns the dates of the oldest and newest saved transactions
+	 * Returns null if there are no saved transactions
+	 * @return range
+	 */
+	LocalDate[] getDateRange() throws SQLException;
+
+	/**
+	 * Returns each saved account's balance along with its opening balance and the sum of its saved transactions
+	 * @return balances - { Saved balance, Opening balance, Transactions' sum } by account ID
+	 */
+	Map<Integer, BigDecimal[]> getReconciliation() throws SQLException;
+}
@@ -0,0 +1,244 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import bank.Account;
+import ledger.Transaction;
+
+/**
+ * Ledger store keeping the saved accounts and transactions in memory
+ * Changes are undone along with the rest of their unit of work if it's rolled back
+ * Used to measure the in-memory structures without disk latency
+ * @author pogegril
+ */
+public class MemoryStore implements LedgerStore {
+
+	/**
+	 * Saved details of an account
+	 */
+	private static class StoredAccount {
+		private String name;
+		private int currency;
+		private int scale;
+		private BigDecimal balance, opening;
+
+		private StoredAccount(String name, int currency, int scale, BigDecimal balance) {
+			this.name = name;
+			this.currency = currency;
+			this.scale = scale;
+			this.balance = balance;
+			this.opening = balance;
+		}
+	}
+
+	private final Map<Integer, StoredAccount> accounts = new HashMap<Integer, StoredAccount>();
+	private final NavigableMap<LocalDate, Map<Integer, Transaction>> transactions = new TreeMap<LocalDate, Map<Integer, Transaction>>();
+	private int lastAccountID, lastTransactionID;
+
+	@Override
+	public UnitOfWork begin() {
+		return UnitOfWork.local();
+	}
+
+	@Override
+	public void addAccount(Account account) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			int id = ++this.lastAccountID;
+			account.setID(id);
+			this.accounts.put(id, new StoredAccount(account.getName(), account.getCurrency().getID(), account.getScale(), account.getBalance()));
+			work.onRollback(() -> this.accounts.remove(id));
+			work.commit();
+		}
+	}
+
+	@Override
+	public void remAccount(int id) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			StoredAccount account = this.accounts.remove(id);
+			if (account == null) {
+				throw new IllegalStateException("Attempted to delete non-existant account.");
+			}
+			work.onRollback(() -> this.accounts.put(id, account));
+
+			List<Transaction> removed = new ArrayList<Transaction>();
+			for (Map<Integer, Transaction> dayRecords : this.transactions.values()) {
+				dayRecords.values().removeIf(transaction -> transaction.getAccountID() == id && removed.add(transaction));
+			}
+			this.transactions.values().removeIf(Map::isEmpty);
+			work.onRollback(() -> removed.forEach(this::put));
+			work.commit();
+		}
+	}
+
+	@Override
+	public void updateName(int id, String name) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			StoredAccount account = getAccount(id);
+			String previous = account.name;
+			account.name = name;
+			work.onRollback(() -> account.name = previous);
+			work.commit();
+		}
+	}
+
+	@Override
+	public void updateCurrency(int id, int currency_id) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			StoredAccount account = getAccount(id);
+			int previous = account.currency;
+			account.currency = currency_id;
+			work.onRollback(() -> account.currency = previous);
+			work.commit();
+		}
+	}
+
+	@Override
+	public void updateBalance(int id, BigDecimal balance, int scale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			StoredAccount account = getAccount(id);
+			BigDecimal previous = account.balance;
+			account.balance = balance;
+			work.onRollback(() -> account.balance = previous);
+			work.commit();
+		}
+	}
+
+	@Override
+	public void addToBalance(int id, BigDecimal amount, int scale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			StoredAccount account = getAccount(id);
+			BigDecimal previous = account.balance;
+			account.balance = account.balance.add(amount);
+			work.onRollback(() -> account.balance = previous);
+			work.commit();
+		}
+	}
+
+	@Override
+	public void rescaleAccount(int id, int scale, int newScale) throws SQLException {
+		// Amounts are kept as decimals so only the account's scale changes
+		try (UnitOfWork work = begin()) {
+			StoredAccount account = getAccount(id);
+			int previous = account.scale;
+			account.scale = newScale;
+			work.onRollback(() -> account.scale = previous);
+			work.commit();
+		}
+	}
+
+	@Override
+	public void addTransaction(Transaction transaction, int scale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			transaction.setID(++this.lastTransactionID);
+			put(transaction);
+			work.onRollback(() -> remove(transaction));
+			work.commit();
+		}
+	}
+
+	@Override
+	public void addTransactions(Collection<Transaction> transactions, Map<Account, BigDecimal> deltas) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			for (Transaction transaction : transactions) {
+				addTransaction(transaction, 0);
+			}
+			for (Map.Entry<Account, BigDecimal> delta : deltas.entrySet()) {
+				Account account = delta.getKey();
+				addToBalance(account.getID(), delta.getValue(), account.getScale());
+			}
+			work.commit();
+		}
+	}
+
+	@Override
+	public void remTransaction(Transaction transaction, int scale) throws SQLException {
+		try (UnitOfWork work = begin()) {
+			Transaction removed = remove(transaction);
+			if (removed == null) {
+				throw new IllegalStateException("Attempted to delete non-existant transaction.");
+			}
+			work.onRollback(() -> put(removed));
+			work.commit();
+		}
+	}
+
+	@Override
+	public void loadTransactions(LocalDate from, LocalDate to, Consumer<Transaction> consumer) {
+		for (Map<Integer, Transaction> dayRecords : this.transactions.subMap(from, true, to, true).values()) {
+			for (Transaction transaction : dayRecords.values()) {
+				consumer.accept(transaction);
+			}
+		}
+	}
+
+	@Override
+	public LocalDate[] getDateRange() {
+		if (this.transactions.isEmpty()) {
+			return null;
+		}
+		return new LocalDate[] { this.transactions.firstKey(), this.transactions.lastKey() };
+	}
+
+	@Override
+	public Map<Integer, BigDecimal[]> getReconciliation() {
+		Map<Integer, BigDecimal> sums = new HashMap<Integer, BigDecimal>();
+		for (Map<Integer, Transaction> dayRecords : this.transactions.values()) {
+			for (Transaction transaction : dayRecords.values()) {
+				sums.merge(transaction.getAccountID(), transaction.getAmount(), BigDecimal::add);
+			}
+		}
+		Map<Integer, BigDecimal[]> balances = new HashMap<Integer, BigDecimal[]>();
+		this.accounts.forEach((id, account) -> balances.put(id,
+				new BigDecimal[] { account.balance, account.opening, sums.getOrDefault(id, BigDecimal.ZERO) }));
+		return balances;
+	}
+
+	/**
+	 * Returns a saved account
+	 * @param id - Account ID
+	 * @return account
+	 */
+	private StoredAccount getAccount(int id) {
+		StoredAccount account = this.accounts.get(id);
+		if (account == null) {
+			throw new IllegalStateException("No account found with the received ID.");
+		}
+		return account;
+	}
+
+	/**
+	 * Saves a transaction under its date
+	 * @param transaction - Transaction with its assigned ID
+	 */
+	private void put(Transaction transaction) {
+		this.transactions.computeIfAbsent(transaction.getDate(), newRecords -> new LinkedHashMap<Integer, Transaction>()).put(transaction.getID(), transaction);
+	}
+
+	/**
+	 * Deletes a saved transaction
+	 * @param transaction - Transaction to delete
+	 * @return removed - Saved transaction, null if it wasn't found
+	 */
+	private Transaction remove(Transaction transaction) {
+		Map<Integer, Transaction> dayRecords = this.transactions.get(transaction.getDate());
+		if (dayRecords == null) {
+			return null;
+		}
+		Transaction removed = dayRecords.remove(transaction.getID());
+		if (dayRecords.isEmpty()) {
+			this.transactions.remove(transaction.getDate());
+		}
+		return removed;
+	}
+}
@@ -0,0 +1,107 @@
+package sql;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upgrades the database's schema by applying numbered migration scripts
+ * The schema version is kept in SQLite's user_version pragma and each script
+ * db/migration-NNN.sql upgrades the database to version NNN
+ * @author pogegril
+ */
+public class Migrations {
+
+	private static final String MIGRATION_PATH = "db/migration-%03d.sql";
+
+	/**
+	 * Applies every migration newer than the database's schema version
+	 * Each migration runs in its own database transaction along with its version update
+	 * @param connection - JDBC writer connection
+	 * @return version - Schema version after migrating
+	 */
+	public static int migrate(Connection connection) throws IOException, SQLException {
+		int version = getVersion(connection);
+		String script;
+		while ((script = readMigration(version + 1)) != null) {
+			version++;
+			try (UnitOfWork work = UnitOfWork.begin(connection)) {
+				try (Statement statement = connection.createStatement()) {
+					for (String sql : splitStatements(script)) {
+						statement.execute(sql);
+					}
+					statement.execute("PRAGMA user_version = " + version);
+				}
+				work.commit();
+			}
+		}
+		return version;
+	}
+
+	/**
+	 * Returns the database's current schema version
+	 * @param connection - JDBC connection
+	 * @return version
+	 */
+	public static int getVersion(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			try (ResultSet result = statement.executeQuery("PRAGMA user_version")) {
+				return result.next() ? result.getInt(1) : 0;
+			}
+		}
+	}
+
+	/**
+	 * Splits the script into its statements
+	 * Trigger bodies hold statements of their own so a trigger only ends at its END
+	 * @param script - Migration script
+	 * @return statements
+	 */
+	private static List<String> splitStatements(String script) {
+		List<String> statements = new ArrayList<String>();
+		StringBuilder statement = new StringBuilder();
+		for (String part : script.split(";")) {
+			statement.append(part);
+			String sql = statement.toString().trim();
+			String upper = sql.toUpperCase();
+			if (upper.contains("CREATE TRIGGER") && !upper.endsWith("END")) {
+				statement.append(";");
+				continue;
+			}
+			if (!sql.isEmpty()) {
+				statements.add(sql);
+			}
+			statement.setLength(0);
+		}
+		return statements;
+	}
+
+	/**
+	 * Returns the migration script to the received version
+	 * Returns null if there's no such migration
+	 * @param version - Schema version
+	 * @return script
+	 */
+	private static String readMigration(int version) throws IOException {
+		InputStream inStream = Migrations.class.getClassLoader().getResourceAsStream(String.format(MIGRATION_PATH, version));
+		if (inStream == null) {
+			return null;
+		}
+
+		StringBuilder script = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inStream))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				script.append(line).append("\n");
+			}
+		}
+		return script.toString();
+	}
+}
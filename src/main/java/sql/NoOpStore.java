@@ -0,0 +1,89 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import bank.Account;
+import ledger.Transaction;
+
+/**
+ * Ledger store that keeps nothing
+ * New accounts and transactions still get unique IDs since the ledger tells them apart by ID
+ * Used to measure the in-memory structures on their own
+ * @author pogegril
+ */
+public class NoOpStore implements LedgerStore {
+
+	private final AtomicInteger lastAccountID = new AtomicInteger();
+	private final AtomicInteger lastTransactionID = new AtomicInteger();
+
+	@Override
+	public UnitOfWork begin() {
+		return UnitOfWork.local();
+	}
+
+	@Override
+	public void addAccount(Account account) {
+		account.setID(this.lastAccountID.incrementAndGet());
+	}
+
+	@Override
+	public void remAccount(int id) {
+	}
+
+	@Override
+	public void updateName(int id, String name) {
+	}
+
+	@Override
+	public void updateCurrency(int id, int currency_id) {
+	}
+
+	@Override
+	public void updateBalance(int id, BigDecimal balance, int scale) {
+	}
+
+	@Override
+	public void addToBalance(int id, BigDecimal amount, int scale) {
+	}
+
+	@Override
+	public void rescaleAccount(int id, int scale, int newScale) {
+	}
+
+	@Override
+	public void addTransaction(Transaction transaction, int scale) {
+		transaction.setID(this.lastTransactionID.incrementAndGet());
+	}
+
+	@Override
+	public void addTransactions(Collection<Transaction> transactions, Map<Account, BigDecimal> deltas) {
+		for (Transaction transaction : transactions) {
+			transaction.setID(this.lastTransactionID.incrementAndGet());
+		}
+	}
+
+	@Override
+	public void remTransaction(Transaction transaction, int scale) {
+	}
+
+	@Override
+	public void loadTransactions(LocalDate from, LocalDate to, Consumer<Transaction> consumer) {
+	}
+
+	@Override
+	public LocalDate[] getDateRange() {
+		return null;
+	}
+
+	@Override
+	public Map<Integer, BigDecimal[]> getReconciliation() {
+		// Nothing is saved so there's nothing to check against
+		return Collections.emptyMap();
+	}
+}
@@ -0,0 +1,78 @@
+package sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs reporting and aggregation queries on background threads using the read-only connections
+ * Long reads don't hold up the writer nor the program's own thread, their results are returned as futures
+ * @author pogegril
+ */
+public class QueryExecutor {
+
+	/**
+	 * Read-only database query returning a result
+	 * @param <T> - Result type
+	 */
+	@FunctionalInterface
+	public interface Query<T> {
+		T run(StatementCache statements) throws SQLException;
+	}
+
+	private final ConnectionManager connections;
+	private final Runnable beforeQuery;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates the executor and its query threads
+	 * @param connections - Database connections, queries borrow their read connections
+	 * @param threads - Number of query threads
+	 * @param beforeQuery - Runs on the query thread before each query, to wait for queued writes
+	 */
+	public QueryExecutor(ConnectionManager connections, int threads, Runnable beforeQuery) {
+		if (threads <= 0) { throw new IllegalArgumentException("Number of query threads must be positive."); }
+		this.connections = connections;
+		this.beforeQuery = beforeQuery;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "bagcheck-query-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Queues the query to run on a read connection
+	 * The future completes exceptionally with the query's SQLException if it fails
+	 * @param query - Read-only query
+	 * @return result - Query's future result
+	 */
+	public <T> CompletableFuture<T> submit(Query<T> query) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		this.executor.execute(() -> {
+			try {
+				this.beforeQuery.run();
+				Connection connection = this.connections.acquireReader();
+				try {
+					result.complete(query.run(this.connections.getStatements(connection)));
+				} finally {
+					this.connections.releaseReader(connection);
+				}
+			} catch (SQLException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Stops accepting queries and lets the queued ones finish
+	 */
+	public void close() {
+		this.executor.shutdown();
+	}
+}
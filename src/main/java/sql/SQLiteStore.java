@@ -0,0 +1,88 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import bank.Account;
+import ledger.Transaction;
+
+/**
+ * Ledger store saving every change into the program's SQLite database
+ * @author pogegril
+ */
+public class SQLiteStore implements LedgerStore {
+
+	@Override
+	public UnitOfWork begin() throws SQLException {
+		return Database.begin();
+	}
+
+	@Override
+	public void addAccount(Account account) throws SQLException {
+		Database.addAccount(account);
+	}
+
+	@Override
+	public void remAccount(int id) throws SQLException {
+		Database.remAccount(id);
+	}
+
+	@Override
+	public void updateName(int id, String name) throws SQLException {
+		Database.updateName(id, name);
+	}
+
+	@Override
+	public void updateCurrency(int id, int currency_id) throws SQLException {
+		Database.updateCurrency(id, currency_id);
+	}
+
+	@Override
+	public void updateBalance(int id, BigDecimal balance, int scale) throws SQLException {
+		Database.updateBalance(id, balance, scale);
+	}
+
+	@Override
+	public void addToBalance(int id, BigDecimal amount, int scale) throws SQLException {
+		Database.addToBalance(id, amount, scale);
+	}
+
+	@Override
+	public void rescaleAccount(int id, int scale, int newScale) throws SQLException {
+		Database.rescaleAccount(id, scale, newScale);
+	}
+
+	@Override
+	public void addTransaction(Transaction transaction, int scale) throws SQLException {
+		Database.addTransaction(transaction, scale);
+	}
+
+	@Override
+	public void addTransactions(Collection<Transaction> transactions, Map<Account, BigDecimal> deltas) throws SQLException {
+		Database.addTransactions(transactions, deltas);
+	}
+
+	@Override
+	public void remTransaction(Transaction transaction, int scale) throws SQLException {
+		Database.remTransaction(transaction, scale);
+	}
+
+	@Override
+	public void loadTransactions(LocalDate from, LocalDate to, Consumer<Transaction> consumer) throws SQLException {
+		Database.loadTransactions(from, to, consumer);
+	}
+
+	@Override
+	public LocalDate[] getDateRange() throws SQLException {
+		return Database.getDateRange();
+	}
+
+	@Override
+	public Map<Integer, BigDecimal[]> getReconciliation() throws SQLException {
+		return Database.getReconciliation();
+	}
+}
@@ -0,0 +1,48 @@
+package sql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Handles the program's settings stored in the database
+ * @author pogegril
+ */
+public class SettingsDAO {
+
+	private StatementCache statements;
+
+	/**
+	 * Settings Data Access Object
+	 * @param statements - Statement cache of the JDBC connection
+	 */
+	public SettingsDAO(StatementCache statements) {
+		this.statements = statements;
+	}
+
+	/**
+	 * Returns the setting's value
+	 * Returns null if the setting was never saved
+	 * @param key - Setting's name
+	 * @return value
+	 */
+	public String get(String key) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT value FROM settings WHERE key = ?");
+		statement.setString(1, key);
+		try (ResultSet result = statement.executeQuery()) {
+			return result.next() ? result.getString(1) : null;
+		}
+	}
+
+	/**
+	 * Saves the setting's value replacing any previous one
+	 * @param key - Setting's name
+	 * @param value - New value
+	 */
+	public void set(String key, String value) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("INSERT OR REPLACE INTO settings(key, value) VALUES (?, ?)");
+		statement.setString(1, key);
+		statement.setString(2, value);
+		statement.executeUpdate();
+	}
+}
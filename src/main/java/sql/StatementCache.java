@@ -0,0 +1,110 @@
+package sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a connection's prepared statements open to reuse them by their SQL text
+ * Cached statements live as long as their connection and must not be closed by the caller
+ * @author pogegril
+ */
+public class StatementCache {
+
+	private static final String KEYS_PREFIX = "#keys ";
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements;
+	private long hits, misses;
+
+	/**
+	 * Creates an empty statement cache for the received connection
+	 * @param connection - JDBC connection
+	 */
+	public StatementCache(Connection connection) {
+		this.connection = connection;
+		this.statements = new HashMap<String, PreparedStatement>();
+	}
+
+	/**
+	 * Returns the cache's connection
+	 * @return connection
+	 */
+	public Connection getConnection() {
+		return this.connection;
+	}
+
+	/**
+	 * Returns the cached statement for the received SQL text
+	 * Prepares and caches it if not present already
+	 * @param sql - SQL statement text
+	 * @return statement
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		return prepare(sql, Statement.NO_GENERATED_KEYS);
+	}
+
+	/**
+	 * Returns the cached statement for the received SQL text
+	 * Prepares and caches it if not present already
+	 * @param sql - SQL statement text
+	 * @param autoGeneratedKeys - Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+	 * @return statement
+	 */
+	public synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		// Statements returning generated keys are cached apart from plain ones with the same text
+		String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? KEYS_PREFIX + sql : sql;
+		PreparedStatement statement = this.statements.get(key);
+		if (statement != null && !statement.isClosed()) {
+			this.hits++;
+			statement.clearParameters();
+			return statement;
+		}
+
+		this.misses++;
+		statement = this.connection.prepareStatement(sql, autoGeneratedKeys);
+		this.statements.put(key, statement);
+		return statement;
+	}
+
+	/**
+	 * Returns the number of requests served by an already prepared statement
+	 * @return hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of requests that had to prepare a new statement
+	 * @return misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of statements currently cached
+	 * @return size
+	 */
+	public synchronized int size() {
+		return this.statements.size();
+	}
+
+	/**
+	 * Closes every cached statement
+	 */
+	public synchronized void close() {
+		for (PreparedStatement statement : this.statements.values()) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		this.statements.clear();
+	}
+}
@@ -1,14 +1,17 @@
 package sql;
 
 import java.math.BigDecimal;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import bank.Currency;
 import ledger.Transaction;
 
 /**
@@ -17,53 +20,87 @@ import ledger.Transaction;
  */
 public class TransactionDAO {
 
-	private Connection connection;
+	private static final String INSERT_STATEMENT = "INSERT INTO transactions(id, name, description, tag, account_id, date, amount) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String SELECT_STATEMENT = "SELECT t.id, t.name, t.description, t.tag, t.account_id, t.date, t.amount, a.scale FROM transactions t JOIN accounts a ON a.id = t.account_id";
+	public static final int DEFAULT_FETCH_SIZE = 1024;
+
+	private StatementCache statements;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
 
 	/**
 	 * Transactions Data Access Object
-	 * @param connection - JDBC connection
+	 * @param statements - Statement cache of the JDBC connection
 	 */
-	public TransactionDAO(Connection connection) {
-		this.connection = connection;
+	public TransactionDAO(StatementCache statements) {
+		this.statements = statements;
 	}
 
 	/**
-	 * Adds a transaction to the database
+	 * Adds a transaction to the database with its assigned ID
 	 * @param transaction - Transaction to save
-	 * @return id - Transaction's assigned id
-	 */
-	public void add(Transaction transaction) throws SQLException {
-		String sqlStatement = "INSERT INTO transactions(name, description, tag, account_id, date, amount) VALUES (?, ?, ?, ?, ?, ?)";
-
-		try (PreparedStatement statement = this.connection.prepareStatement(sqlStatement, Statement.RETURN_GENERATED_KEYS)) {
-			statement.setString(1, transaction.getName());
-			statement.setString(2, transaction.getDesc());
-			statement.setString(3, transaction.getTag());
-			statement.setInt(4, transaction.getAccountID());
-			statement.setString(5, transaction.getDate().toString());
-			statement.setBigDecimal(6, transaction.getAmount());
-			statement.executeUpdate();
-
-			try (ResultSet id = statement.getGeneratedKeys()) {
-				if (id.next()) {
-					transaction.setID(id.getInt(1));	
-				} else {
-					throw new  SQLException("Failed to retrieve transaction's auto-generated ID.");
-				}
-			}
+	 * @param scale - Stored scale of the transaction's account
+	 */
+	public void add(Transaction transaction, int scale) throws SQLException {
+		PreparedStatement statement = this.statements.prepare(INSERT_STATEMENT);
+		setInsertParameters(statement, transaction, scale);
+		statement.executeUpdate();
+	}
+
+	/**
+	 * Adds all of the transactions to the database with their assigned IDs in a single JDBC batch
+	 * @param transactions - Transactions to save
+	 * @param scales - Stored scale of the transactions' accounts by account ID
+	 */
+	public void addAll(Collection<Transaction> transactions, Map<Integer, Integer> scales) throws SQLException {
+		if (transactions.isEmpty()) {
+			return;
+		}
+
+		PreparedStatement statement = this.statements.prepare(INSERT_STATEMENT);
+		for (Transaction transaction : transactions) {
+			setInsertParameters(statement, transaction, scales.get(transaction.getAccountID()));
+			statement.addBatch();
+		}
+		statement.executeBatch();
+	}
+
+	/**
+	 * Returns the highest transaction ID in the database
+	 * Returns 0 if there are no transactions
+	 * @return id
+	 */
+	public int getMaxID() throws SQLException {
+		try (ResultSet result = this.statements.prepare("SELECT COALESCE(MAX(id), 0) FROM transactions").executeQuery()) {
+			return result.next() ? result.getInt(1) : 0;
 		}
 	}
 
+	/**
+	 * Binds the transaction's details to an insert statement
+	 * @param statement - Insert statement
+	 * @param transaction - Transaction to save
+	 * @param scale - Stored scale of the transaction's account
+	 */
+	private void setInsertParameters(PreparedStatement statement, Transaction transaction, int scale) throws SQLException {
+		statement.setInt(1, transaction.getID());
+		statement.setString(2, transaction.getName());
+		statement.setString(3, transaction.getDesc());
+		statement.setString(4, transaction.getTag());
+		statement.setInt(5, transaction.getAccountID());
+		statement.setLong(6, transaction.getDate().toEpochDay());
+		statement.setLong(7, FixedPoint.toMinorUnits(transaction.getAmount(), scale));
+	}
+
 	/**
 	 * Deletes the transaction with the received id
 	 * @param id - Transaction id
 	 * @return update - Number of database rows update (Should be 0 or 1)
 	 */
 	public int delete(int id) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("DELETE FROM transactions WHERE id = ?")){
-			statement.setInt(1, id);
-			return statement.executeUpdate();
-		}
+		PreparedStatement statement = this.statements.prepare("DELETE FROM transactions WHERE id = ?");
+		statement.setInt(1, id);
+		return statement.executeUpdate();
 	}
 
 	/**
@@ -72,10 +109,23 @@ public class TransactionDAO {
 	 * @return update - Number of database rows update (Should be 0 or 1)
 	 */
 	public int deleteByAccount(int id) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("DELETE FROM transactions WHERE account_id = ?")){
-			statement.setInt(1, id);
-			return statement.executeUpdate();
-		}
+		PreparedStatement statement = this.statements.prepare("DELETE FROM transactions WHERE account_id = ?");
+		statement.setInt(1, id);
+		return statement.executeUpdate();
+	}
+
+	/**
+	 * Converts the amounts of the account's transactions to a greater stored scale
+	 * @param id - Account id
+	 * @param scale - Current stored scale
+	 * @param newScale - Greater stored scale
+	 * @return update - Number of database rows updated
+	 */
+	public int rescaleByAccount(int id, int scale, int newScale) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("UPDATE transactions SET amount = amount * ? WHERE account_id = ?");
+		statement.setLong(1, BigDecimal.ONE.movePointRight(newScale - scale).longValueExact());
+		statement.setInt(2, id);
+		return statement.executeUpdate();
 	}
 
 	/**
@@ -84,30 +134,14 @@ public class TransactionDAO {
 	 * @return transaction
 	 */
 	public Transaction getTransaction(int id) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("SELECT * FROM transactions WHERE id = ?")) {
-			statement.setInt(1, id);
-
-			try (ResultSet result = statement.executeQuery()) {
-				if (result.next()) {
-					String name = result.getString("name");
-					String desc = result.getString("description");
-					String tag = result.getString("tag");
-					int account_id = result.getInt("account_id");
-					int transaction_id = result.getInt("id");
-					LocalDate date = LocalDate.parse(result.getString("date"));
-					BigDecimal amount = result.getBigDecimal("amount");
-					if (desc == null) {
-						Transaction transaction = new Transaction(name, tag, account_id, date, amount);
-						transaction.setID(transaction_id);
-						return transaction;
-					} else {
-						Transaction transaction = new Transaction(name, desc, tag, account_id, date, amount);
-						transaction.setID(transaction_id);
-						return transaction;
-					}
-				} else {
-					throw new IllegalStateException("No transaction found with the received ID.");
-				}
+		PreparedStatement statement = this.statements.prepare(SELECT_STATEMENT + " WHERE t.id = ?");
+		statement.setInt(1, id);
+
+		try (ResultSet result = statement.executeQuery()) {
+			if (result.next()) {
+				return readTransaction(result, LocalDate.ofEpochDay(result.getLong(6)));
+			} else {
+				throw new IllegalStateException("No transaction found with the received ID.");
 			}
 		}
 	}
@@ -117,31 +151,9 @@ public class TransactionDAO {
 	 * @return transactions
 	 */
 	public ArrayList<Transaction> getTransactions() throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("SELECT * FROM transactions")) {
-			try (ResultSet result = statement.executeQuery()) {
-
-				ArrayList<Transaction> transactions = new ArrayList<Transaction>();
-				while (result.next()) {
-					String name = result.getString("name");
-					String desc = result.getString("description");
-					String tag = result.getString("tag");
-					int account_id = result.getInt("account_id");
-					int transaction_id = result.getInt("id");
-					LocalDate date = LocalDate.parse(result.getString("date"));
-					BigDecimal amount = result.getBigDecimal("amount");
-					if (desc == null) {
-						Transaction transaction = new Transaction(name, tag, account_id, date, amount);
-						transaction.setID(transaction_id);
-						transactions.add(transaction);
-					} else {
-						Transaction transaction = new Transaction(name, desc, tag, account_id, date, amount);
-						transaction.setID(transaction_id);
-						transactions.add(transaction);
-					}
-				}
-				return transactions;
-			}
-		}
+		ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+		forEachTransaction(transactions::add);
+		return transactions;
 	}
 
 	/**
@@ -150,24 +162,153 @@ public class TransactionDAO {
 	 * @return transactions
 	 */
 	public ArrayList<Transaction> getTransactions(LocalDate startDate) throws SQLException {
-		try (PreparedStatement statement = this.connection.prepareStatement("SELECT * FROM transactions WHERE date >= ?")) {
-			statement.setString(1, startDate.toString());
-
-			try (ResultSet result = statement.executeQuery()) {
-				ArrayList<Transaction> transactions = new ArrayList<Transaction>();
-				while (result.next()) {
-					String name = result.getString("name");
-					String desc = result.getString("description");
-					int account_id = result.getInt("account_id");
-					int transaction_id = result.getInt("id");
-					LocalDate date = LocalDate.parse(result.getString("date"));
-					BigDecimal amount = result.getBigDecimal("amount");
-					Transaction transaction = new Transaction(name, desc, account_id, date, amount);
-					transaction.setID(transaction_id);
-					transactions.add(transaction);
+		ArrayList<Transaction> transactions = new ArrayList<Transaction>();
+		forEachTransaction(startDate, transactions::add);
+		return transactions;
+	}
+
+	/**
+	 * Passes every recorded transaction in the database to the consumer
+	 * Rows are handed over while being read from the open cursor instead of being collected first
+	 * @param consumer - Receives each transaction
+	 */
+	public void forEachTransaction(Consumer<Transaction> consumer) throws SQLException {
+		stream(this.statements.prepare(SELECT_STATEMENT), consumer);
+	}
+
+	/**
+	 * Passes every recorded transaction in the database since the set date to the consumer
+	 * Rows are handed over while being read from the open cursor instead of being collected first
+	 * @param startDate - Stream transactions since this date
+	 * @param consumer - Receives each transaction
+	 */
+	public void forEachTransaction(LocalDate startDate, Consumer<Transaction> consumer) throws SQLException {
+		PreparedStatement statement = this.statements.prepare(SELECT_STATEMENT + " WHERE t.date >= ?");
+		statement.setLong(1, startDate.toEpochDay());
+		stream(statement, consumer);
+	}
+
+	/**
+	 * Passes every recorded transaction in the database between the set dates to the consumer
+	 * Rows are handed over while being read from the open cursor instead of being collected first
+	 * @param startDate - First date of the range
+	 * @param endDate - Last date of the range
+	 * @param consumer - Receives each transaction
+	 */
+	public void forEachTransaction(LocalDate startDate, LocalDate endDate, Consumer<Transaction> consumer) throws SQLException {
+		PreparedStatement statement = this.statements.prepare(SELECT_STATEMENT + " WHERE t.date BETWEEN ? AND ?");
+		statement.setLong(1, startDate.toEpochDay());
+		statement.setLong(2, endDate.toEpochDay());
+		stream(statement, consumer);
+	}
+
+	/**
+	 * Returns the net flow by currency of the transactions between the set dates
+	 * Summed by the database one account at a time so no transaction is loaded
+	 * @param startDate - First date of the range
+	 * @param endDate - Last date of the range
+	 * @return flow - Net amount by currency ID
+	 */
+	public BigDecimal[] getFlowByCurrency(LocalDate startDate, LocalDate endDate) throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT a.currency, a.scale, SUM(t.amount) FROM transactions t JOIN accounts a ON a.id = t.account_id WHERE t.date BETWEEN ? AND ? GROUP BY a.id");
+		statement.setLong(1, startDate.toEpochDay());
+		statement.setLong(2, endDate.toEpochDay());
+
+		BigDecimal[] flow = new BigDecimal[Currency.values().length];
+		Arrays.fill(flow, BigDecimal.ZERO);
+		try (ResultSet result = statement.executeQuery()) {
+			while (result.next()) {
+				int currency = result.getInt(1);
+				flow[currency] = flow[currency].add(FixedPoint.fromMinorUnits(result.getLong(3), result.getInt(2)));
+			}
+		}
+		return flow;
+	}
+
+	/**
+	 * Returns the dates of the oldest and newest recorded transactions
+	 * Returns null if there are no recorded transactions
+	 * @return range
+	 */
+	public LocalDate[] getDateRange() throws SQLException {
+		PreparedStatement statement = this.statements.prepare("SELECT MIN(date), MAX(date) FROM transactions");
+		try (ResultSet result = statement.executeQuery()) {
+			result.next();
+			long first = result.getLong(1);
+			if (result.wasNull()) {
+				return null;
+			}
+			return new LocalDate[] { LocalDate.ofEpochDay(first), LocalDate.ofEpochDay(result.getLong(2)) };
+		}
+	}
+
+	/**
+	 * Passes every recorded transaction in the received id range to the consumer
+	 * Rows are handed over while being read from the open cursor instead of being collected first
+	 * @param firstID - First transaction id of the range
+	 * @param lastID - Last transaction id of the range
+	 * @param consumer - Receives each transaction
+	 */
+	public void forEachTransaction(long firstID, long lastID, Consumer<Transaction> consumer) throws SQLException {
+		PreparedStatement statement = this.statements.prepare(SELECT_STATEMENT + " WHERE t.id BETWEEN ? AND ?");
+		statement.setLong(1, firstID);
+		statement.setLong(2, lastID);
+		stream(statement, consumer);
+	}
+
+	/**
+	 * Sets the number of rows fetched from the database at a time while streaming
+	 * @param fetchSize - Number of rows
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize <= 0) { throw new IllegalArgumentException("Fetch size must be positive."); }
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Runs the select statement passing each resulting transaction to the consumer
+	 * @param statement - Select statement with its parameters set
+	 * @param consumer - Receives each transaction
+	 */
+	void stream(PreparedStatement statement, Consumer<Transaction> consumer) throws SQLException {
+		statement.setFetchSize(this.fetchSize);
+		try (ResultSet result = statement.executeQuery()) {
+			// Consecutive rows from the same day share their LocalDate
+			long lastDay = Long.MIN_VALUE;
+			LocalDate date = null;
+			while (result.next()) {
+				long epochDay = result.getLong(6);
+				if (epochDay != lastDay) {
+					date = LocalDate.ofEpochDay(epochDay);
+					lastDay = epochDay;
 				}
-				return transactions;
+				consumer.accept(readTransaction(result, date));
 			}
 		}
 	}
+
+	/**
+	 * Builds the transaction in the result's current row
+	 * Columns are read by their position in SELECT_STATEMENT
+	 * @param result - Query result
+	 * @param date - Row's date
+	 * @return transaction
+	 */
+	private static Transaction readTransaction(ResultSet result, LocalDate date) throws SQLException {
+		int transaction_id = result.getInt(1);
+		String name = result.getString(2);
+		String desc = result.getString(3);
+		String tag = result.getString(4);
+		int account_id = result.getInt(5);
+		BigDecimal amount = FixedPoint.fromMinorUnits(result.getLong(7), result.getInt(8));
+
+		Transaction transaction;
+		if (desc == null) {
+			transaction = new Transaction(name, tag, account_id, date, amount);
+		} else {
+			transaction = new Transaction(name, desc, tag, account_id, date, amount);
+		}
+		transaction.setID(transaction_id);
+		return transaction;
+	}
 }
@@ -0,0 +1,265 @@
+package sql;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Groups every database write of a single user action into one SQLite transaction
+ * Units started while another one is open on the same thread join it, so only the outermost unit commits
+ * In-memory changes register undo actions which are run if the unit is rolled back
+ * Units bound to a connection write immediately, deferred units hand their writes
+ * to the write-behind queue when they commit and local units only track the in-memory changes
+ * of stores that don't write to a database
+ * @author pogegril
+ */
+public class UnitOfWork implements AutoCloseable {
+
+	/**
+	 * A database operation run on a connection's statements
+	 */
+	interface Operation {
+		void run(StatementCache statements) throws SQLException;
+	}
+
+	// Only one thread at a time may write through the shared connection
+	private static final ReentrantLock LOCK = new ReentrantLock();
+	private static UnitOfWork active;
+
+	private final UnitOfWork root;
+	private final StatementCache statements;
+	private final Connection connection;
+	private final WriteBehindQueue queue;
+	private final Deque<Runnable> undo;
+	private final List<JournalEntry> operations;
+	private final BalanceChanges balances;
+	private boolean autoCommit, committed, closed, rollbackOnly, barrier;
+
+	/**
+	 * Creates a unit of work
+	 * @param statements - Statement cache of the JDBC writer connection, null if the unit isn't bound to a connection
+	 * @param queue - Write-behind queue of a deferred unit, null if the unit isn't deferred
+	 * @param root - Outermost unit being joined, null if this is the outermost one
+	 */
+	private UnitOfWork(StatementCache statements, WriteBehindQueue queue, UnitOfWork root) {
+		this.statements = statements;
+		this.connection = statements == null ? null : statements.getConnection();
+		this.queue = queue;
+		this.root = root;
+		this.undo = root == null ? new ArrayDeque<Runnable>() : root.undo;
+		this.operations = root == null ? new ArrayList<JournalEntry>() : root.operations;
+		this.balances = root == null ? new BalanceChanges() : root.balances;
+	}
+
+	/**
+	 * Starts a unit of work on the received connection
+	 * Joins the thread's open unit if there is one
+	 * @param connection - JDBC writer connection
+	 * @return work
+	 */
+	static UnitOfWork begin(Connection connection) throws SQLException {
+		return begin(new StatementCache(connection));
+	}
+
+	/**
+	 * Starts a unit of work on the statement cache's connection
+	 * Joins the thread's open unit if there is one
+	 * @param statements - Statement cache of the JDBC writer connection
+	 * @return work
+	 */
+	static UnitOfWork begin(StatementCache statements) throws SQLException {
+		LOCK.lock();
+		if (LOCK.getHoldCount() > 1) {
+			return new UnitOfWork(active.statements, active.queue, active);
+		}
+
+		try {
+			UnitOfWork work = new UnitOfWork(statements, null, null);
+			work.autoCommit = work.connection.getAutoCommit();
+			work.connection.setAutoCommit(false);
+			active = work;
+			return work;
+		} catch (SQLException | RuntimeException e) {
+			LOCK.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Starts a unit of work whose writes are queued on commit instead of run immediately
+	 * Joins the thread's open unit if there is one
+	 * @param queue - Write-behind queue
+	 * @return work
+	 */
+	static UnitOfWork defer(WriteBehindQueue queue) {
+		LOCK.lock();
+		if (LOCK.getHoldCount() > 1) {
+			return new UnitOfWork(active.statements, active.queue, active);
+		}
+
+		UnitOfWork work = new UnitOfWork(null, queue, null);
+		active = work;
+		return work;
+	}
+
+	/**
+	 * Starts a unit of work without a database, which only rolls back in-memory changes
+	 * Joins the thread's open unit if there is one
+	 * @return work
+	 */
+	public static UnitOfWork local() {
+		LOCK.lock();
+		if (LOCK.getHoldCount() > 1) {
+			return new UnitOfWork(active.statements, active.queue, active);
+		}
+
+		UnitOfWork work = new UnitOfWork(null, null, null);
+		active = work;
+		return work;
+	}
+
+	/**
+	 * Runs the write as part of this unit
+	 * Deferred units keep it until the outermost unit commits, local units drop it
+	 * @param entry - Database write
+	 */
+	void write(JournalEntry entry) throws SQLException {
+		if (this.closed) { throw new IllegalStateException("Unit of work already closed."); }
+		if (this.statements != null) {
+			entry.run(this.statements);
+		} else if (this.queue != null) {
+			this.operations.add(entry);
+		}
+	}
+
+	/**
+	 * Adds an amount to the account's saved balance when the outermost unit commits
+	 * Every change to the same account within the unit is saved with a single update
+	 * @param id - Account ID
+	 * @param amount - Amount to add
+	 * @param scale - Account's stored scale
+	 */
+	public void addToBalance(int id, BigDecimal amount, int scale) {
+		if (this.closed) { throw new IllegalStateException("Unit of work already closed."); }
+		this.balances.add(id, amount, scale);
+	}
+
+	/**
+	 * Replaces the account's saved balance when the outermost unit commits
+	 * @param id - Account ID
+	 * @param balance - New balance
+	 * @param scale - Account's stored scale
+	 */
+	public void setBalance(int id, BigDecimal balance, int scale) {
+		if (this.closed) { throw new IllegalStateException("Unit of work already closed."); }
+		this.balances.set(id, balance, scale);
+	}
+
+	/**
+	 * Saves the balance changes recorded so far ahead of the unit's following writes
+	 * To be called before writes that change how balances are stored
+	 */
+	void writeBalances() throws SQLException {
+		if (this.closed) { throw new IllegalStateException("Unit of work already closed."); }
+		if (this.queue != null) {
+			// The writer saves the balance changes of earlier queued units first
+			(this.root == null ? this : this.root).barrier = true;
+		}
+		if (this.balances.isEmpty()) {
+			return;
+		}
+		if (this.statements != null) {
+			this.balances.write(this.statements);
+		} else if (this.queue != null) {
+			this.operations.addAll(this.balances.toEntries());
+		}
+		this.balances.clear();
+	}
+
+	/**
+	 * Registers an action reverting an in-memory change made within this unit
+	 * Actions are run in reverse order if the unit is rolled back
+	 * @param action - Undo action
+	 */
+	public void onRollback(Runnable action) {
+		if (this.closed) { throw new IllegalStateException("Unit of work already closed."); }
+		this.undo.push(action);
+	}
+
+	/**
+	 * Commits the unit's writes
+	 * Joined units only mark themselves as successful, leaving the commit to the outermost unit
+	 */
+	public void commit() throws SQLException {
+		if (this.closed) { throw new IllegalStateException("Unit of work already closed."); }
+		if (this.root != null) {
+			this.committed = true;
+			return;
+		}
+		if (this.rollbackOnly) {
+			throw new SQLException("A nested operation failed, the unit of work must be rolled back.");
+		}
+		if (this.statements != null) {
+			this.balances.write(this.statements);
+			this.connection.commit();
+		} else if (this.queue != null && (!this.operations.isEmpty() || !this.balances.isEmpty())) {
+			// The undo actions are kept in case the queued writes fail
+			BalanceChanges balances = new BalanceChanges();
+			balances.merge(this.balances);
+			this.queue.submit(new ArrayList<JournalEntry>(this.operations), balances, this.barrier, new ArrayList<Runnable>(this.undo));
+		}
+		this.operations.clear();
+		this.balances.clear();
+		this.undo.clear();
+		this.committed = true;
+	}
+
+	/**
+	 * Ends the unit, rolling back its writes and in-memory changes if it wasn't committed
+	 * A joined unit that wasn't committed forces the outermost unit to roll back
+	 */
+	@Override
+	public void close() throws SQLException {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		try {
+			if (this.root != null) {
+				if (!this.committed) {
+					this.root.rollbackOnly = true;
+				}
+				return;
+			}
+
+			try {
+				if (!this.committed) {
+					try {
+						if (this.connection != null) {
+							this.connection.rollback();
+						}
+					} finally {
+						this.operations.clear();
+						this.balances.clear();
+						while (!this.undo.isEmpty()) {
+							this.undo.pop().run();
+						}
+					}
+				}
+			} finally {
+				active = null;
+				if (this.connection != null) {
+					this.connection.setAutoCommit(this.autoCommit);
+				}
+			}
+		} finally {
+			LOCK.unlock();
+		}
+	}
+}
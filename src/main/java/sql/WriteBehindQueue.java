@@ -0,0 +1,415 @@
+package sql;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Saves committed units of work on a single background writer thread
+ * Units queued while the writer is busy are saved together in one SQLite transaction,
+ * each inside its own savepoint so a failing unit doesn't discard the rest of its group
+ * The group's balance changes are merged and saved with one update per account,
+ * if a merged update fails each unit saves its own inside its savepoint instead
+ * With a journal, units are appended to it as they arrive and compacted into the database periodically
+ * A compaction whose transaction fails keeps its units journaled and is retried before they're reported
+ * @author pogegril
+ */
+public class WriteBehindQueue {
+
+	// Most units taken from the queue at once
+	private static final int MAX_GROUP = 256;
+	// Journaled units are compacted once there are this many of them or the oldest is this old
+	private static final int COMPACT_UNITS = 4096;
+	private static final long COMPACT_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+	// Compactions attempted before the units of a failing database transaction are reported
+	private static final int COMPACT_ATTEMPTS = 3;
+	// Setting holding the last journal sequence number compacted into the database
+	public static final String SEQUENCE_SETTING = "journal_sequence";
+
+	/**
+	 * Writes and undo actions of a committed unit of work
+	 */
+	private static class Batch {
+		private final List<JournalEntry> entries;
+		private final BalanceChanges balances;
+		private final boolean barrier;
+		private final List<Runnable> undo;
+
+		private Batch(List<JournalEntry> entries, BalanceChanges balances, boolean barrier, List<Runnable> undo) {
+			this.entries = entries;
+			this.balances = balances;
+			this.barrier = barrier;
+			this.undo = undo;
+		}
+	}
+
+	// Queued after the last batch to stop the writer
+	private static final Batch STOP = new Batch(null, null, false, null);
+	// Queued by flush() so journaled units are compacted right away
+	private static final Batch FLUSH = new Batch(null, null, false, null);
+
+	private final ConnectionManager connections;
+	private final Journal journal;
+	private final BlockingQueue<Batch> queue;
+	private final Thread writer;
+	private volatile Consumer<WriteFailure> failureHandler;
+	private int pending;
+	private boolean stopped;
+	private boolean failed;
+
+	/**
+	 * Creates the queue saving units straight into the database and starts its writer thread
+	 * @param connections - Database connections, the writer connection is only used by the writer thread
+	 */
+	public WriteBehindQueue(ConnectionManager connections) {
+		this(connections, null);
+	}
+
+	/**
+	 * Creates the queue and starts its writer thread
+	 * @param connections - Database connections, the writer connection is only used by the writer thread
+	 * @param journal - Operation journal units are appended to before being compacted, null for none
+	 */
+	public WriteBehindQueue(ConnectionManager connections, Journal journal) {
+		this.connections = connections;
+		this.journal = journal;
+		this.queue = new LinkedBlockingQueue<Batch>();
+		this.failureHandler = failure -> failure.getCause().printStackTrace();
+		this.writer = new Thread(this::run, "bagcheck-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Sets the handler receiving the units that failed to save
+	 * It's called on the writer thread so it should pass the failure on to the program's own thread
+	 * @param handler - Failure handler
+	 */
+	public void setFailureHandler(Consumer<WriteFailure> handler) {
+		if (handler == null) { throw new IllegalArgumentException("Failure handler must not be null."); }
+		this.failureHandler = handler;
+	}
+
+	/**
+	 * Queues a committed unit's writes
+	 * @param entries - Database writes in order
+	 * @param balances - Balance changes saved after the writes
+	 * @param barrier - Whether the writes need earlier balance changes saved before them
+	 * @param undo - Undo actions of the unit in the order they must run
+	 */
+	synchronized void submit(List<JournalEntry> entries, BalanceChanges balances, boolean barrier, List<Runnable> undo) {
+		if (this.stopped) { throw new IllegalStateException("Write-behind queue already closed."); }
+		this.pending++;
+		this.queue.add(new Batch(entries, balances, barrier, undo));
+	}
+
+	/**
+	 * Waits until every queued unit has been saved into the database or has failed
+	 */
+	public synchronized void flush() {
+		if (this.pending > 0 && !this.stopped) {
+			this.queue.add(FLUSH);
+		}
+		boolean interrupted = false;
+		while (this.pending > 0 && this.writer.isAlive()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns whether any unit failed to save since the queue started
+	 * Failed units' undos may not have run yet, so the program's state can't be trusted to match the database
+	 * @return hasFailed?
+	 */
+	public synchronized boolean hasFailed() {
+		return this.failed;
+	}
+
+	/**
+	 * Saves every queued unit, stops the writer thread and closes the journal
+	 */
+	public void close() {
+		synchronized (this) {
+			if (this.stopped) {
+				return;
+			}
+			this.stopped = true;
+			this.queue.add(STOP);
+		}
+		flush();
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.journal != null) {
+			try {
+				this.journal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writer thread's loop journaling the queued units and compacting them into the database
+	 * Without a journal every group is compacted as soon as it's taken
+	 */
+	private void run() {
+		List<Batch> group = new ArrayList<Batch>();
+		List<Batch> backlog = new ArrayList<Batch>();
+		long lastSequence = 0, lastCompaction = 0;
+		int attempts = 0;
+		boolean stop = false, flush = false;
+		while (!stop) {
+			try {
+				Batch first;
+				if (backlog.isEmpty()) {
+					first = this.queue.take();
+				} else {
+					// Wakes up in time to compact the backlog
+					first = this.queue.poll(Math.max(0, lastCompaction + COMPACT_INTERVAL - System.nanoTime()), TimeUnit.NANOSECONDS);
+				}
+				if (first != null) {
+					group.add(first);
+					this.queue.drainTo(group, MAX_GROUP - 1);
+				}
+			} catch (InterruptedException e) {
+				// Only close() stops the writer so no queued unit is lost
+				continue;
+			}
+			stop = group.remove(STOP);
+			flush |= group.removeIf(batch -> batch == FLUSH);
+
+			if (!group.isEmpty()) {
+				if (backlog.isEmpty()) {
+					// The backlog's age counts from its oldest unit
+					lastCompaction = System.nanoTime();
+				}
+				if (this.journal == null) {
+					backlog.addAll(group);
+				} else {
+					try {
+						lastSequence = append(group);
+						backlog.addAll(group);
+					} catch (IOException e) {
+						List<WriteFailure> failures = failAll(group, e);
+						Collections.reverse(failures);
+						finish(group.size(), failures);
+					}
+				}
+				group.clear();
+			}
+
+			if (this.journal == null || stop || flush || backlog.size() >= COMPACT_UNITS
+					|| System.nanoTime() - lastCompaction >= COMPACT_INTERVAL) {
+				if (!backlog.isEmpty()) {
+					try {
+						finish(backlog.size(), compact(backlog, lastSequence));
+						backlog.clear();
+						attempts = 0;
+					} catch (SQLException | RuntimeException e) {
+						if (this.journal != null && stop) {
+							// Left in the journal for the next startup to recover
+							e.printStackTrace();
+							finish(backlog.size(), Collections.emptyList());
+							backlog.clear();
+						} else if (!stop && ++attempts < COMPACT_ATTEMPTS) {
+							// The units stay queued, and journaled, until the next compaction retries them
+							e.printStackTrace();
+							lastCompaction = System.nanoTime();
+						} else {
+							List<WriteFailure> failures = failAll(backlog, e);
+							Collections.reverse(failures);
+							// The reported units are undone so they mustn't be recovered either
+							resetJournal();
+							finish(backlog.size(), failures);
+							backlog.clear();
+							attempts = 0;
+						}
+					}
+				}
+				flush = false;
+			}
+		}
+	}
+
+	/**
+	 * Appends the group's units to the journal with a single sync
+	 * @param group - Queued units
+	 * @return sequence - Journal sequence number of the group's last unit
+	 */
+	private long append(List<Batch> group) throws IOException {
+		List<byte[]> records = new ArrayList<byte[]>(group.size());
+		for (Batch batch : group) {
+			List<JournalEntry> entries = new ArrayList<JournalEntry>(batch.entries);
+			entries.addAll(batch.balances.toEntries());
+			records.add(JournalEntry.encode(entries));
+		}
+		return this.journal.append(records) + group.size() - 1;
+	}
+
+	/**
+	 * Marks units as done and passes on their failures
+	 * @param count - Number of units saved or failed
+	 * @param failures - Units that couldn't be saved
+	 */
+	private void finish(int count, List<WriteFailure> failures) {
+		synchronized (this) {
+			// Set before waking flush so the failure is seen once the units are done
+			this.failed |= !failures.isEmpty();
+			this.pending -= count;
+			notifyAll();
+		}
+		for (WriteFailure failure : failures) {
+			try {
+				this.failureHandler.accept(failure);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Saves the units into the database in a single transaction
+	 * With a journal, its last compacted sequence number is saved in the same transaction
+	 * and the journal is only emptied once it commits, since every journaled unit was then either saved or reported
+	 * Failures are returned newest first so reverting them in order undoes later changes before earlier ones
+	 * @param units - Units in the order they were committed
+	 * @param lastSequence - Journal sequence number of the last unit
+	 * @return failures - Units that couldn't be saved
+	 * @throws SQLException - If the transaction failed as a whole, nothing was saved and the journal is kept
+	 */
+	private List<WriteFailure> compact(List<Batch> units, long lastSequence) throws SQLException {
+		List<WriteFailure> failures;
+		Connection connection = null;
+		try {
+			connection = this.connections.getWriter();
+			StatementCache statements = this.connections.getStatements(connection);
+			connection.setAutoCommit(false);
+			try (Statement savepoint = connection.createStatement()) {
+				savepoint.execute("SAVEPOINT units");
+				try {
+					failures = writeUnits(units, statements, savepoint, true);
+				} catch (SQLException | RuntimeException e) {
+					// A failing merged balance update is retried unit by unit so it only fails the units touching it
+					savepoint.execute("ROLLBACK TO units");
+					failures = writeUnits(units, statements, savepoint, false);
+				}
+				savepoint.execute("RELEASE units");
+			}
+			if (this.journal != null) {
+				new SettingsDAO(statements).set(SEQUENCE_SETTING, Long.toString(lastSequence));
+			}
+			connection.commit();
+		} catch (SQLException | RuntimeException e) {
+			// Every unit is rolled back with the database transaction
+			if (connection != null) {
+				try {
+					connection.rollback();
+				} catch (SQLException rollback) {
+					e.addSuppressed(rollback);
+				}
+			}
+			throw e;
+		} finally {
+			if (connection != null) {
+				try {
+					connection.setAutoCommit(true);
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		resetJournal();
+		Collections.reverse(failures);
+		return failures;
+	}
+
+	/**
+	 * Runs the units' writes, each inside its own savepoint
+	 * Merged, the balance changes of the saved units are written together with one update per account
+	 * and a failing update fails the call, otherwise each unit writes its own inside its savepoint
+	 * @param units - Units in the order they were committed
+	 * @param statements - Statement cache of the JDBC writer connection
+	 * @param savepoint - Statement running the savepoint commands
+	 * @param merge - Whether balance changes are merged across units
+	 * @return failures - Units that couldn't be saved, oldest first
+	 */
+	private static List<WriteFailure> writeUnits(List<Batch> units, StatementCache statements, Statement savepoint, boolean merge) throws SQLException {
+		List<WriteFailure> failures = new ArrayList<WriteFailure>();
+		BalanceChanges balances = new BalanceChanges();
+		for (Batch batch : units) {
+			if (merge && batch.barrier) {
+				balances.write(statements);
+				balances.clear();
+			}
+			savepoint.execute("SAVEPOINT unit");
+			try {
+				for (JournalEntry entry : batch.entries) {
+					entry.run(statements);
+				}
+				if (!merge) {
+					batch.balances.write(statements);
+				}
+				savepoint.execute("RELEASE unit");
+				// Only saved units' balance changes are kept
+				if (merge) {
+					balances.merge(batch.balances);
+				}
+			} catch (SQLException | RuntimeException e) {
+				savepoint.execute("ROLLBACK TO unit");
+				savepoint.execute("RELEASE unit");
+				failures.add(new WriteFailure(batch.undo, e));
+			}
+		}
+		if (merge) {
+			balances.write(statements);
+		}
+		return failures;
+	}
+
+	/**
+	 * Empties the journal once its units were saved or reported
+	 * A failed reset after a commit is harmless since the saved sequence number skips the compacted records
+	 */
+	private void resetJournal() {
+		if (this.journal != null) {
+			try {
+				this.journal.reset();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns a failure for every unit
+	 * @param units - Units that couldn't be saved
+	 * @param cause - Error that stopped them
+	 * @return failures
+	 */
+	private static List<WriteFailure> failAll(List<Batch> units, Exception cause) {
+		List<WriteFailure> failures = new ArrayList<WriteFailure>();
+		for (Batch batch : units) {
+			failures.add(new WriteFailure(batch.undo, cause));
+		}
+		return failures;
+	}
+}
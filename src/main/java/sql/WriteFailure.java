@@ -0,0 +1,56 @@
+package sql;
+
+import java.util.List;
+
+/**
+ * Event describing a queued unit of work whose writes couldn't be saved
+ * Carries the unit's undo actions so the program can revert the in-memory changes the unit made
+ * @author pogegril
+ */
+public class WriteFailure {
+
+	private final List<Runnable> undo;
+	private final Exception cause;
+	private boolean reverted;
+
+	/**
+	 * Creates the failure event
+	 * @param undo - Undo actions of the failed unit in the order they must run
+	 * @param cause - Error that stopped the writes
+	 */
+	WriteFailure(List<Runnable> undo, Exception cause) {
+		this.undo = undo;
+		this.cause = cause;
+	}
+
+	/**
+	 * Returns the error that stopped the writes
+	 * @return cause
+	 */
+	public Exception getCause() {
+		return this.cause;
+	}
+
+	/**
+	 * Returns a message describing the failure to be displayed
+	 * @return message
+	 */
+	public String getMessage() {
+		String message = this.cause.getMessage();
+		return "Failed to save changes: " + (message == null ? this.cause.getClass().getSimpleName() : message);
+	}
+
+	/**
+	 * Reverts the in-memory changes of the failed unit
+	 * Must run on the thread that made the changes, only the first call has any effect
+	 */
+	public void revert() {
+		if (this.reverted) {
+			return;
+		}
+		this.reverted = true;
+		for (Runnable action : this.undo) {
+			action.run();
+		}
+	}
+}
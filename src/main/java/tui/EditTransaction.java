@@ -150,8 +150,7 @@ public class EditTransaction extends BasicWindow {
 						!(newAmount.compareTo(transaction.getAmount()) == 0)
 				   ) {
 					Transaction newTransaction = new Transaction(name.getText(), desc.getText(), tag.getText(), accountList.getSelectedItem().getID(), newDate, newAmount);
-					ledger.addTransaction(newTransaction);
-					ledger.removeTransaction(transaction);
+					ledger.editTransaction(transaction, newTransaction);
 				   }
 				this.close();
 			} catch (IllegalArgumentException e) {
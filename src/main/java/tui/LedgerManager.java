@@ -4,6 +4,8 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 
 import com.googlecode.lanterna.gui2.BasicWindow;
 import com.googlecode.lanterna.gui2.Borders;
@@ -31,6 +33,9 @@ import tui.components.HorizontalRadioBox;
  */
 public class LedgerManager extends BasicWindow {
 
+	// Transactions added to the list at once
+	private static final int PAGE_SIZE = 200;
+
 	// Transaction selection
 	private Transaction selected;
 	private TextBox filterBox;
@@ -38,6 +43,11 @@ public class LedgerManager extends BasicWindow {
 	private RadioBoxList<Transaction> transList;
 	private Panel infoPanel;
 
+	// Transactions not listed yet, days are only read as pages reach them
+	private Iterator<ArrayList<Transaction>> pendingDays = Collections.emptyIterator();
+	private Iterator<Transaction> pending = Collections.emptyIterator();
+	private String nameFilter;
+
 	/**
 	 * Creates the ledger manager window
 	 * @param tui - User terminal interface
@@ -102,6 +112,12 @@ public class LedgerManager extends BasicWindow {
 		});
 
 		transPanel.addComponent(this.transList);
+		transPanel.addComponent(new Button(": More :", () -> {
+			if (!listPage()) {
+				this.infoPanel.removeAllComponents();
+				this.infoPanel.addComponent(new Label("No more transactions."), LinearLayout.createLayoutData(LinearLayout.Alignment.Center));
+			}
+		}), LinearLayout.createLayoutData(LinearLayout.Alignment.Center));
 		transPanel.addComponent(new EmptySpace(new TerminalSize(0, 1)));
 		Component borderedTransPanel = transPanel.withBorder(Borders.singleLine("Transactions"));
 		mainPanel.addComponent(borderedTransPanel);
@@ -205,17 +221,16 @@ public class LedgerManager extends BasicWindow {
 	/**
 	 * Updates the transaction list panel
 	 * Applies filters if there are any
+	 * Only the first page is listed so a memory-bounded ledger doesn't read its whole history
 	 * @param ledger - User ledger
 	 */
 	private void updateTransactions(Ledger ledger) {
 		this.transList.clearItems();
+		this.pendingDays = Collections.emptyIterator();
+		this.pending = Collections.emptyIterator();
+		this.nameFilter = null;
 		if (this.filterBox.getText() == null || this.filterBox.getText().isEmpty()) {
-			for (ArrayList<Transaction> dayRecords : ledger.getLedger().descendingMap().values()) {
-				for (Transaction transaction : dayRecords) {
-					this.transList.addItem(transaction);
-				}
-
-			}
+			this.pendingDays = ledger.getDescendingRecords().iterator();
 		} else {
 			// Filter by Tag
 			if (this.filterMode.getSelectedIndex() == 0) {
@@ -226,41 +241,52 @@ public class LedgerManager extends BasicWindow {
 				filterByAccount(ledger);
 			}
 		}
+		listPage();
 	}
 
 	/**
-	 * Returns a list of the transactions with the specified tag
-	 * @param ledger - Reference to all transactions
-	 * @return transactions
+	 * Adds the next page of pending transactions to the list
+	 * @return isListed? - False if there were no more transactions
 	 */
-	private void filterByTag(Ledger ledger) {
-		for (ArrayList<Transaction> dayRecords : ledger.getLedger().descendingMap().values()) {
-			for (Transaction transaction : dayRecords) {
-				if (transaction.getTag().equals(this.filterBox.getText().trim())) {
+	private boolean listPage() {
+		int listed = 0;
+		while (listed < PAGE_SIZE) {
+			if (this.pending.hasNext()) {
+				Transaction transaction = this.pending.next();
+				if (this.nameFilter == null || transaction.getName().toLowerCase().contains(this.nameFilter)) {
 					this.transList.addItem(transaction);
+					listed++;
 				}
+			} else if (this.pendingDays.hasNext()) {
+				this.pending = this.pendingDays.next().iterator();
+			} else {
+				break;
 			}
 		}
+		return listed > 0;
+	}
+
+	/**
+	 * Lists the transactions with the specified tag page by page
+	 * @param ledger - Reference to all transactions
+	 * @return transactions
+	 */
+	private void filterByTag(Ledger ledger) {
+		this.pending = ledger.getRecordsByTag(this.filterBox.getText().trim()).iterator();
 	}
 
 	/**
-	 * Returns a list of the transactions with similar names
+	 * Lists the transactions with similar names page by page
 	 * @param ledger - Reference to all transactions
 	 * @return transactions
 	 */
 	private void filterByName(Ledger ledger) {
-		for (ArrayList<Transaction> dayRecords : ledger.getLedger().descendingMap().values()) {
-			for (Transaction transaction : dayRecords) {
-				String search = this.filterBox.getText().trim().toLowerCase();
-				if (transaction.getName().toLowerCase().contains(search)) {
-					this.transList.addItem(transaction);
-				}
-			}
-		}
+		this.nameFilter = this.filterBox.getText().trim().toLowerCase();
+		this.pendingDays = ledger.getDescendingRecords().iterator();
 	}
 
 	/**
-	 * Returns a list of the transactions from the specified account
+	 * Lists the transactions from the specified account page by page
 	 * @param ledger - Reference to all transactions
 	 * @return transactions
 	 */
@@ -276,13 +302,7 @@ public class LedgerManager extends BasicWindow {
 			if (id == -1) { return; }
 		}
 
-		for (ArrayList<Transaction> dayRecords : ledger.getLedger().descendingMap().values()) {
-			for (Transaction transaction : dayRecords) {
-				if (transaction.getAccountID() == id) {
-					this.transList.addItem(transaction);
-				}
-			}
-		}
+		this.pending = ledger.getRecordsByAccount(id).iterator();
 	}	
 
 	/**
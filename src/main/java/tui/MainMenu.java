@@ -12,11 +12,13 @@ import com.googlecode.lanterna.gui2.LinearLayout;
 import com.googlecode.lanterna.gui2.Panel;
 import com.googlecode.lanterna.gui2.Window;
 import com.googlecode.lanterna.gui2.WindowBasedTextGUI;
+import com.googlecode.lanterna.gui2.dialogs.MessageDialog;
 import com.googlecode.lanterna.TerminalSize;
 
 import bank.Assets;
 import bank.Currency;
 import ledger.Ledger;
+import sql.Database;
 
 /**
  * Main menu TUI window
@@ -26,6 +28,7 @@ public class MainMenu extends BasicWindow {
 
 	// Overview panel
 	private Panel viewPanel;
+	private WindowBasedTextGUI tui;
 
 	/**
 	 * Handles the main menu window with the user's data
@@ -36,6 +39,7 @@ public class MainMenu extends BasicWindow {
 		// Window Details
 		super("BagCheck");
 		setHints(Arrays.asList(Window.Hint.CENTERED));
+		this.tui = tui;
 		Assets assets = ledger.getAssets();
 
 		// Window panel
@@ -66,6 +70,23 @@ public class MainMenu extends BasicWindow {
 			updateOverview(ledger);
 		}), LinearLayout.createLayoutData(LinearLayout.Alignment.Center));
 
+		// Backup button, the copy runs in the background
+		Button backup = new Button(": Backup :");
+		backup.addListener(button -> {
+			button.setEnabled(false);
+			button.setLabel(": Backing up :");
+			Database.backup().whenComplete((path, e) -> tui.getGUIThread().invokeLater(() -> {
+				button.setEnabled(true);
+				button.setLabel(": Backup :");
+				if (e != null) {
+					MessageDialog.showMessageDialog(tui, "Error", "Backup failed: " + (e.getCause() != null ? e.getCause() : e).getMessage());
+				} else {
+					MessageDialog.showMessageDialog(tui, "Backup", "Saved to " + path);
+				}
+			}));
+		});
+		menuPanel.addComponent(backup, LinearLayout.createLayoutData(LinearLayout.Alignment.Center));
+
 		menuPanel.addComponent(new EmptySpace(new TerminalSize(0, 1)));
 		menuPanel.addComponent(new Label("╚══════════════╝"));
 		mainPanel.addComponent(menuPanel);
@@ -93,7 +114,7 @@ public class MainMenu extends BasicWindow {
 		this.viewPanel.addComponent(new Label(getBalance(assets)));
 		this.viewPanel.addComponent(new EmptySpace(new TerminalSize(0, 1)));
 		this.viewPanel.addComponent(new Label(getMonthlyNet(ledger, assets)));
-		this.viewPanel.addComponent(new Label(getYearlyNet(ledger, assets)));
+		this.viewPanel.addComponent(getYearlyNet(ledger, assets));
 		this.viewPanel.addComponent(new EmptySpace(new TerminalSize(0, 1)));
 		this.viewPanel.addComponent(new Button(": Exit :", () -> {
 			this.close();
@@ -123,14 +144,29 @@ public class MainMenu extends BasicWindow {
 	}
 
 	/**
-	 * Returns the formatted string for yearly netflow labels
+	 * Returns the yearly netflow label
+	 * Memory-bounded ledgers get the flow from a background query instead of loading the whole year,
+	 * the label is filled in once the query finishes
 	 * @param ledger - User ledger
 	 * @param assets - User assets
 	 * @return yearlyLabel
 	 */
-	private String getYearlyNet(Ledger ledger, Assets assets) {
+	private Label getYearlyNet(Ledger ledger, Assets assets) {
 		LocalDate firstOfYear = LocalDate.now().withDayOfYear(1);
 		Currency currency = assets.getMainCurrency();
-		return "This year: " + ledger.getAssetsFlow(firstOfYear)[currency.getID()].toString() + " " + currency.getSign();
+		if (!ledger.isBounded()) {
+			return new Label("This year: " + ledger.getAssetsFlow(firstOfYear)[currency.getID()].toString() + " " + currency.getSign());
+		}
+
+		Label label = new Label("This year: ... " + currency.getSign());
+		Database.getAssetsFlow(firstOfYear, LocalDate.now()).whenComplete((flow, e) -> this.tui.getGUIThread().invokeLater(() -> {
+			if (e != null) {
+				e.printStackTrace();
+				label.setText("This year: unavailable");
+			} else {
+				label.setText("This year: " + flow[currency.getID()].toString() + " " + currency.getSign());
+			}
+		}));
+		return label;
 	}
 }
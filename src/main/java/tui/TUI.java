@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import com.googlecode.lanterna.graphics.SimpleTheme;
 import com.googlecode.lanterna.gui2.MultiWindowTextGUI;
+import com.googlecode.lanterna.gui2.dialogs.MessageDialog;
 import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.screen.TerminalScreen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
@@ -11,6 +12,7 @@ import com.googlecode.lanterna.terminal.Terminal;
 import com.googlecode.lanterna.TextColor;
 
 import ledger.Ledger;
+import sql.Database;
 
 /**
  * Terminal User Interface manager
@@ -18,6 +20,9 @@ import ledger.Ledger;
  */
 public class TUI {
 
+	// Saves changes on a background thread so slow disks don't freeze the interface
+	private static final boolean WRITE_BEHIND = Boolean.parseBoolean(System.getProperty("bagcheck.writeBehind", "true"));
+
 	/**
 	 * Starts the multi-window TUI interface on the main menu
 	 * @param ledger - User's ledger
@@ -30,6 +35,13 @@ public class TUI {
 			MultiWindowTextGUI tui = new MultiWindowTextGUI(screen);
 
 			tui.setTheme(new SimpleTheme(new TextColor.RGB(145, 121, 153), new TextColor.RGB(25, 18, 29)));
+			if (WRITE_BEHIND) {
+				// Changes that fail to save are reverted on the GUI thread
+				Database.startWriteBehind(failure -> tui.getGUIThread().invokeLater(() -> {
+					failure.revert();
+					MessageDialog.showMessageDialog(tui, "Error", failure.getMessage());
+				}));
+			}
 			tui.addWindowAndWait(new MainMenu(tui, ledger));
 		} finally {
 			screen.stopScreen();
@@ -96,13 +96,11 @@ public class Transfer extends BasicWindow {
 					if (!(description == null || description.isEmpty())) {
 						Transaction sent = new Transaction(senderName, description, "Transfer", sender.getID(), LocalDate.now(), new BigDecimal(amount.getText()).negate());
 						Transaction received = new Transaction(receiverName, description, "Transfer", receiver.getID(), LocalDate.now(), new BigDecimal(amount.getText()));
-						ledger.addTransaction(sent);
-						ledger.addTransaction(received);
+						ledger.addTransactions(Arrays.asList(sent, received));
 					} else {
 						Transaction sent = new Transaction(senderName, "Transfer", sender.getID(), LocalDate.now(), new BigDecimal(amount.getText()).negate());
 						Transaction received = new Transaction(receiverName, "Transfer", receiver.getID(), LocalDate.now(), new BigDecimal(amount.getText()));
-						ledger.addTransaction(sent);
-						ledger.addTransaction(received);
+						ledger.addTransactions(Arrays.asList(sent, received));
 					}
 				}
 			} catch (IllegalArgumentException e) {
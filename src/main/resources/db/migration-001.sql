@@ -16,3 +16,8 @@ CREATE TABLE IF NOT EXISTS transactions(
 	
 	FOREIGN KEY(account_id) REFERENCES accounts(id)
 );
+
+CREATE TABLE IF NOT EXISTS settings(
+	key TEXT PRIMARY KEY,
+	value TEXT NOT NULL
+);
@@ -0,0 +1,5 @@
+CREATE INDEX IF NOT EXISTS transactions_date ON transactions(date);
+
+CREATE INDEX IF NOT EXISTS transactions_account_date ON transactions(account_id, date);
+
+CREATE INDEX IF NOT EXISTS transactions_tag ON transactions(tag);
@@ -0,0 +1,70 @@
+-- Stores money as integers of minor units with each account's decimal scale
+-- Yen (3) and Won (6) have no minor units, every other currency has two decimal places
+-- Accounts holding amounts with more decimals than their currency get a greater scale so no value is rounded,
+-- amounts with more than six decimals abort the migration instead
+CREATE TEMP TABLE migration_scales(
+	account_id INTEGER PRIMARY KEY,
+	scale INTEGER NOT NULL CONSTRAINT amounts_within_six_decimals CHECK(scale <= 6)
+);
+
+INSERT INTO migration_scales(account_id, scale)
+	SELECT account_id, MAX(decimals) FROM (
+		SELECT id AS account_id, CASE WHEN currency IN (3, 6) THEN 0 ELSE 2 END AS decimals FROM accounts
+		UNION ALL
+		SELECT id, CASE WHEN ROUND(balance) = balance THEN 0 WHEN ROUND(balance, 1) = balance THEN 1 WHEN ROUND(balance, 2) = balance THEN 2 WHEN ROUND(balance, 3) = balance THEN 3
+			WHEN ROUND(balance, 4) = balance THEN 4 WHEN ROUND(balance, 5) = balance THEN 5 WHEN ROUND(balance, 6) = balance THEN 6 ELSE 7 END FROM accounts
+		UNION ALL
+		SELECT account_id, CASE WHEN ROUND(amount) = amount THEN 0 WHEN ROUND(amount, 1) = amount THEN 1 WHEN ROUND(amount, 2) = amount THEN 2 WHEN ROUND(amount, 3) = amount THEN 3
+			WHEN ROUND(amount, 4) = amount THEN 4 WHEN ROUND(amount, 5) = amount THEN 5 WHEN ROUND(amount, 6) = amount THEN 6 ELSE 7 END FROM transactions
+		UNION ALL
+		SELECT account_id, 2 FROM transactions WHERE account_id NOT IN (SELECT id FROM accounts)
+	) GROUP BY account_id;
+
+CREATE TABLE transactions_new(
+	name TEXT NOT NULL,
+	description TEXT,
+	tag TEXT NOT NULL,
+	account_id INTEGER NOT NULL,
+	id INTEGER PRIMARY KEY,
+	date TEXT NOT NULL,
+	amount INTEGER NOT NULL,
+	
+	FOREIGN KEY(account_id) REFERENCES accounts(id)
+);
+
+INSERT INTO transactions_new(name, description, tag, account_id, id, date, amount)
+	SELECT t.name, t.description, t.tag, t.account_id, t.id, t.date,
+		-- Rounding only drops the binary fraction's error since every amount fits its scale
+		CAST(ROUND(t.amount * CASE s.scale WHEN 0 THEN 1 WHEN 1 THEN 10 WHEN 2 THEN 100 WHEN 3 THEN 1000 WHEN 4 THEN 10000 WHEN 5 THEN 100000 ELSE 1000000 END) AS INTEGER)
+	FROM transactions t JOIN migration_scales s ON s.account_id = t.account_id;
+
+DROP TABLE transactions;
+
+ALTER TABLE transactions_new RENAME TO transactions;
+
+CREATE INDEX IF NOT EXISTS transactions_date ON transactions(date);
+
+CREATE INDEX IF NOT EXISTS transactions_account_date ON transactions(account_id, date);
+
+CREATE INDEX IF NOT EXISTS transactions_tag ON transactions(tag);
+
+CREATE TABLE accounts_new(
+	name TEXT NOT NULL,
+	id INTEGER PRIMARY KEY,
+	balance INTEGER NOT NULL,
+	currency INTEGER NOT NULL,
+	scale INTEGER NOT NULL
+);
+
+INSERT INTO accounts_new(name, id, balance, currency, scale)
+	SELECT a.name, a.id,
+		CAST(ROUND(a.balance * CASE s.scale WHEN 0 THEN 1 WHEN 1 THEN 10 WHEN 2 THEN 100 WHEN 3 THEN 1000 WHEN 4 THEN 10000 WHEN 5 THEN 100000 ELSE 1000000 END) AS INTEGER),
+		a.currency,
+		s.scale
+	FROM accounts a JOIN migration_scales s ON s.account_id = a.id;
+
+DROP TABLE accounts;
+
+ALTER TABLE accounts_new RENAME TO accounts;
+
+DROP TABLE migration_scales;
@@ -0,0 +1,26 @@
+-- Stores transaction dates as the number of days since 1970-01-01
+CREATE TABLE transactions_new(
+	name TEXT NOT NULL,
+	description TEXT,
+	tag TEXT NOT NULL,
+	account_id INTEGER NOT NULL,
+	id INTEGER PRIMARY KEY,
+	date INTEGER NOT NULL,
+	amount INTEGER NOT NULL,
+	
+	FOREIGN KEY(account_id) REFERENCES accounts(id)
+);
+
+INSERT INTO transactions_new(name, description, tag, account_id, id, date, amount)
+	SELECT name, description, tag, account_id, id, CAST(ROUND(julianday(date) - 2440587.5) AS INTEGER), amount
+	FROM transactions;
+
+DROP TABLE transactions;
+
+ALTER TABLE transactions_new RENAME TO transactions;
+
+CREATE INDEX IF NOT EXISTS transactions_date ON transactions(date);
+
+CREATE INDEX IF NOT EXISTS transactions_account_date ON transactions(account_id, date);
+
+CREATE INDEX IF NOT EXISTS transactions_tag ON transactions(tag);
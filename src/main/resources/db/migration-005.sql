@@ -0,0 +1,38 @@
+-- Counts every change to the ledger's tables so saved copies of the ledger can tell when they're stale
+-- Migrations rebuilding these tables must create their triggers again
+CREATE TABLE IF NOT EXISTS changes(
+	id INTEGER PRIMARY KEY CHECK (id = 1),
+	counter INTEGER NOT NULL
+);
+
+INSERT OR IGNORE INTO changes(id, counter) VALUES (1, 0);
+
+CREATE TRIGGER IF NOT EXISTS accounts_insert AFTER INSERT ON accounts
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
+
+CREATE TRIGGER IF NOT EXISTS accounts_update AFTER UPDATE ON accounts
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
+
+CREATE TRIGGER IF NOT EXISTS accounts_delete AFTER DELETE ON accounts
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
+
+CREATE TRIGGER IF NOT EXISTS transactions_insert AFTER INSERT ON transactions
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
+
+CREATE TRIGGER IF NOT EXISTS transactions_update AFTER UPDATE ON transactions
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
+
+CREATE TRIGGER IF NOT EXISTS transactions_delete AFTER DELETE ON transactions
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
@@ -0,0 +1,28 @@
+-- Closed years whose transactions were moved into their own archive-YYYY.db database
+-- The highest archived id keeps new transactions from reusing the ids of archived ones
+CREATE TABLE IF NOT EXISTS archives(
+	year INTEGER PRIMARY KEY,
+	first_date INTEGER NOT NULL,
+	last_date INTEGER NOT NULL,
+	last_id INTEGER NOT NULL
+);
+
+-- Number and net amount of each account's archived transactions by year, in the account's stored scale
+CREATE TABLE IF NOT EXISTS archive_totals(
+	year INTEGER NOT NULL,
+	account_id INTEGER NOT NULL,
+	count INTEGER NOT NULL,
+	amount INTEGER NOT NULL,
+
+	PRIMARY KEY(year, account_id)
+);
+
+-- Archived transactions deleted after their year was archived
+CREATE TABLE IF NOT EXISTS archive_removed(
+	id INTEGER PRIMARY KEY
+);
+
+CREATE TRIGGER IF NOT EXISTS archive_removed_insert AFTER INSERT ON archive_removed
+BEGIN
+	UPDATE changes SET counter = counter + 1;
+END;
@@ -0,0 +1,9 @@
+-- Balance each account started with, in the account's stored scale
+-- An account's balance must equal its opening balance plus the sum of its transactions, archived ones included
+-- Drift saved before this can't be told apart from an opening balance, so existing balances are taken as correct
+-- and only drift made afterwards, balances edited by the user included, is reported
+ALTER TABLE accounts ADD COLUMN opening INTEGER NOT NULL DEFAULT 0;
+
+UPDATE accounts SET opening = balance
+	- COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.account_id = accounts.id), 0)
+	- COALESCE((SELECT SUM(z.amount) FROM archive_totals z WHERE z.account_id = accounts.id), 0);
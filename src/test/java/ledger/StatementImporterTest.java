@@ -0,0 +1,137 @@
+package ledger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bank.Account;
+import bank.Currency;
+import sql.MemoryStore;
+
+/**
+ * Tests parsing statement amounts, dates and CSV records
+ * Records are read through importFrom into a ledger kept in memory
+ * @author pogegril
+ */
+class StatementImporterTest {
+
+	private Ledger ledger;
+	private Account account;
+
+	@BeforeEach
+	void createLedger() throws SQLException {
+		this.ledger = new Ledger(new MemoryStore(), 0);
+		this.account = new Account("Main", Currency.Euro, BigDecimal.ZERO);
+		this.ledger.getAssets().addAccount(this.account);
+	}
+
+	/**
+	 * Imports the statement into the main account
+	 * @param columns - Column mapping
+	 * @param statement - CSV statement
+	 * @return transactions - Imported transactions by ID
+	 */
+	private List<Transaction> importStatement(String columns, String statement) throws IOException, SQLException {
+		ImportMapping mapping = new ImportMapping(columns);
+		mapping.setAccount("Main");
+		new StatementImporter(this.ledger, mapping, 2).importFrom(new StringReader(statement));
+		List<Transaction> transactions = new ArrayList<Transaction>(this.ledger.getRecordsByAccount(this.account.getID()));
+		transactions.sort(Comparator.comparingInt(Transaction::getID));
+		return transactions;
+	}
+
+	@Test
+	void parsesAmounts() {
+		assertEquals(new BigDecimal("-1234.56"), StatementImporter.parseAmount("-1,234.56", '.'));
+		assertEquals(new BigDecimal("1234.56"), StatementImporter.parseAmount("1.234,56 €", ','));
+		assertEquals(new BigDecimal("-12.50"), StatementImporter.parseAmount("(12.50)", '.'));
+		assertEquals(new BigDecimal("7"), StatementImporter.parseAmount("+7", '.'));
+		assertEquals(new BigDecimal("1000000.00"), StatementImporter.parseAmount("1'000'000.00", '.'));
+		assertEquals(new BigDecimal("0.5"), StatementImporter.parseAmount(" $.5 ", '.'));
+	}
+
+	@Test
+	void rejectsInvalidAmounts() {
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseAmount("", '.'));
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseAmount("-", '.'));
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseAmount("1.2.3", '.'));
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseAmount("12abc", '.'));
+		assertThrows(ArithmeticException.class, () -> StatementImporter.parseAmount("99999999999999999999", '.'));
+	}
+
+	@Test
+	void parsesDates() {
+		assertEquals(LocalDate.of(2023, 12, 31), StatementImporter.parseDate("31/12/2023", ImportMapping.DateOrder.DMY));
+		assertEquals(LocalDate.of(2023, 12, 31), StatementImporter.parseDate("12-31-2023", ImportMapping.DateOrder.MDY));
+		assertEquals(LocalDate.of(2023, 12, 31), StatementImporter.parseDate("2023-12-31", ImportMapping.DateOrder.YMD));
+		assertEquals(LocalDate.of(2024, 2, 1), StatementImporter.parseDate("1.2.24", ImportMapping.DateOrder.DMY));
+		assertEquals(LocalDate.of(2024, 2, 29), StatementImporter.parseDate(" 2024/02/29 ", ImportMapping.DateOrder.YMD));
+	}
+
+	@Test
+	void rejectsInvalidDates() {
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseDate(null, ImportMapping.DateOrder.DMY));
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseDate("31/12", ImportMapping.DateOrder.DMY));
+		assertThrows(IllegalArgumentException.class, () -> StatementImporter.parseDate("1/2/3/4", ImportMapping.DateOrder.DMY));
+		assertThrows(DateTimeException.class, () -> StatementImporter.parseDate("31/02/2023", ImportMapping.DateOrder.DMY));
+	}
+
+	@Test
+	void readsQuotedFields() throws IOException, SQLException {
+		List<Transaction> transactions = importStatement("date,name,description,amount",
+				"date,name,description,amount\r\n"
+				+ "01/03/2024,\"Shop, Inc.\",\"Said \"\"hi\"\"\",-5.00\r\n"
+				+ "02/03/2024,Salary,\"Two\nlines\",100\n"
+				+ "\n"
+				+ "03/03/2024,Last,,1.50");
+
+		assertEquals(3, transactions.size());
+		assertEquals("Shop, Inc.", transactions.get(0).getName());
+		assertEquals("Said \"hi\"", transactions.get(0).getDesc());
+		assertEquals(new BigDecimal("-5.00"), transactions.get(0).getAmount());
+		assertEquals(LocalDate.of(2024, 3, 1), transactions.get(0).getDate());
+		assertEquals("Two\nlines", transactions.get(1).getDesc());
+		assertEquals("Last", transactions.get(2).getName());
+		assertNull(transactions.get(2).getDesc());
+		assertEquals(new BigDecimal("96.50"), this.account.getBalance());
+	}
+
+	@Test
+	void readsOtherDelimiters() throws IOException, SQLException {
+		ImportMapping mapping = new ImportMapping("date,amount,name");
+		mapping.setAccount("Main");
+		mapping.setHeader(false);
+		mapping.setDelimiter(';');
+		mapping.setDecimalSeparator(',');
+		new StatementImporter(this.ledger, mapping, 10).importFrom(new StringReader("01/03/2024;-1.234,50;Rent\n"));
+
+		Transaction transaction = this.ledger.getRecordsByAccount(this.account.getID()).iterator().next();
+		assertEquals("Rent", transaction.getName());
+		assertEquals(new BigDecimal("-1234.50"), transaction.getAmount());
+	}
+
+	@Test
+	void reportsTheFailingLine() {
+		IllegalArgumentException unterminated = assertThrows(IllegalArgumentException.class,
+				() -> importStatement("date,name,amount", "date,name,amount\n01/03/2024,\"Open,1\n"));
+		assertTrue(unterminated.getMessage().contains("Unterminated"), unterminated.getMessage());
+
+		IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class,
+				() -> importStatement("date,name,amount", "date,name,amount\n01/03/2024,Fine,1\n01/03/2024,Bad,1.234\n"));
+		assertTrue(invalid.getMessage().startsWith("Line 3:"), invalid.getMessage());
+	}
+}
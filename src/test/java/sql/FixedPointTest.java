@@ -0,0 +1,57 @@
+package sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the conversion between decimal amounts and integer minor units
+ * @author pogegril
+ */
+class FixedPointTest {
+
+	@Test
+	void convertsToMinorUnits() {
+		assertEquals(125, FixedPoint.toMinorUnits(new BigDecimal("1.25"), 2));
+		assertEquals(-125, FixedPoint.toMinorUnits(new BigDecimal("-1.25"), 2));
+		assertEquals(1200, FixedPoint.toMinorUnits(new BigDecimal("12"), 2));
+		assertEquals(1250, FixedPoint.toMinorUnits(new BigDecimal("1.250"), 3));
+		assertEquals(500, FixedPoint.toMinorUnits(new BigDecimal("500"), 0));
+	}
+
+	@Test
+	void acceptsTrailingZerosPastTheScale() {
+		assertEquals(125, FixedPoint.toMinorUnits(new BigDecimal("1.2500"), 2));
+	}
+
+	@Test
+	void rejectsAmountsWithMoreDecimalsThanTheScale() {
+		assertThrows(IllegalArgumentException.class, () -> FixedPoint.toMinorUnits(new BigDecimal("1.255"), 2));
+		assertThrows(IllegalArgumentException.class, () -> FixedPoint.toMinorUnits(new BigDecimal("0.5"), 0));
+	}
+
+	@Test
+	void rejectsAmountsOutOfRange() {
+		BigDecimal huge = new BigDecimal(Long.MAX_VALUE).add(BigDecimal.ONE);
+		assertThrows(IllegalArgumentException.class, () -> FixedPoint.toMinorUnits(huge, 0));
+		assertThrows(IllegalArgumentException.class, () -> FixedPoint.toMinorUnits(new BigDecimal(Long.MAX_VALUE), 2));
+	}
+
+	@Test
+	void convertsFromMinorUnits() {
+		assertEquals(new BigDecimal("1.25"), FixedPoint.fromMinorUnits(125, 2));
+		assertEquals(new BigDecimal("-0.05"), FixedPoint.fromMinorUnits(-5, 2));
+		assertEquals(new BigDecimal("500"), FixedPoint.fromMinorUnits(500, 0));
+	}
+
+	@Test
+	void roundTrips() {
+		for (String amount : new String[] { "0.00", "0.01", "-0.01", "1234567.89", "-98765.43" }) {
+			BigDecimal value = new BigDecimal(amount);
+			assertEquals(value, FixedPoint.fromMinorUnits(FixedPoint.toMinorUnits(value, 2), 2));
+		}
+	}
+}
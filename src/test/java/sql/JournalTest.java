@@ -0,0 +1,178 @@
+package sql;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bank.Account;
+import bank.Currency;
+import ledger.Transaction;
+
+/**
+ * Tests encoding units into journal records and reading them back through the journal's checksums
+ * @author pogegril
+ */
+class JournalTest {
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Returns a unit touching every kind of value an entry holds
+	 * @return entries
+	 */
+	private static List<JournalEntry> createUnit() {
+		Account account = new Account("Main", Currency.Euro, new BigDecimal("10.50"));
+		account.setID(1);
+		Transaction described = new Transaction("Groceries", "Weekly shop", "Food", 1, LocalDate.of(2024, 3, 1), new BigDecimal("-42.10"));
+		described.setID(1);
+		Transaction plain = new Transaction("Salary", "Income", 1, LocalDate.of(2024, 3, 2), new BigDecimal("1500.00"));
+		plain.setID(2);
+
+		List<JournalEntry> entries = new ArrayList<JournalEntry>();
+		entries.add(JournalEntry.addAccount(account));
+		entries.add(JournalEntry.addTransactions(List.of(described, plain), Map.of(1, 2)));
+		entries.add(JournalEntry.updateName(1, "Main ünïcode €"));
+		entries.add(JournalEntry.setBalance(1, new BigDecimal("1468.40"), 2));
+		entries.add(JournalEntry.addToBalance(1, new BigDecimal("-0.40"), 2));
+		entries.add(JournalEntry.removeTransaction(described, 2));
+		return entries;
+	}
+
+	@Test
+	void decodesWhatItEncodes() throws IOException {
+		byte[] record = JournalEntry.encode(createUnit());
+		List<JournalEntry> decoded = JournalEntry.decode(record);
+		assertEquals(createUnit().size(), decoded.size());
+		assertArrayEquals(record, JournalEntry.encode(decoded));
+	}
+
+	@Test
+	void decodedEntriesReplayIntoTheDatabase() throws IOException, SQLException {
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+			Migrations.migrate(connection);
+			StatementCache statements = new StatementCache(connection);
+			for (JournalEntry entry : JournalEntry.decode(JournalEntry.encode(createUnit()))) {
+				entry.run(statements);
+			}
+
+			try (Statement statement = connection.createStatement()) {
+				try (ResultSet result = statement.executeQuery("SELECT name, balance, scale FROM accounts WHERE id = 1")) {
+					result.next();
+					assertEquals("Main ünïcode €", result.getString(1));
+					assertEquals(146800, result.getLong(2));
+					assertEquals(2, result.getInt(3));
+				}
+				try (ResultSet result = statement.executeQuery("SELECT id, amount, date FROM transactions")) {
+					result.next();
+					assertEquals(2, result.getInt(1));
+					assertEquals(150000, result.getLong(2));
+					assertEquals(LocalDate.of(2024, 3, 2).toEpochDay(), result.getLong(3));
+				}
+			}
+		}
+	}
+
+	@Test
+	void readsBackAppendedRecords() throws IOException {
+		Path path = this.directory.resolve("journal");
+		byte[] first = JournalEntry.encode(createUnit());
+		byte[] second = JournalEntry.encode(List.of(JournalEntry.removeAccount(1)));
+		try (Journal journal = new Journal(path, 7)) {
+			assertEquals(8, journal.append(List.of(first, second)));
+		}
+
+		List<Long> sequences = new ArrayList<Long>();
+		List<byte[]> records = new ArrayList<byte[]>();
+		try (Journal journal = new Journal(path, 0)) {
+			assertEquals(9, journal.getLastSequence());
+			journal.forEachRecord(0, (sequence, record) -> {
+				sequences.add(sequence);
+				records.add(record);
+			});
+		}
+		assertEquals(List.of(8L, 9L), sequences);
+		assertArrayEquals(first, records.get(0));
+		assertArrayEquals(second, records.get(1));
+	}
+
+	@Test
+	void skipsRecordsUpToTheSequence() throws IOException {
+		Path path = this.directory.resolve("journal");
+		try (Journal journal = new Journal(path, 0)) {
+			byte[] record = JournalEntry.encode(List.of(JournalEntry.removeAccount(1)));
+			journal.append(List.of(record, record, record));
+
+			List<Long> sequences = new ArrayList<Long>();
+			journal.forEachRecord(2, (sequence, read) -> sequences.add(sequence));
+			assertEquals(List.of(3L), sequences);
+		}
+	}
+
+	@Test
+	void cutsOffRecordsFailingTheirChecksum() throws IOException {
+		Path path = this.directory.resolve("journal");
+		byte[] record = JournalEntry.encode(List.of(JournalEntry.updateName(1, "Main")));
+		try (Journal journal = new Journal(path, 0)) {
+			journal.append(List.of(record, record));
+		}
+		long size = Files.size(path);
+
+		// Flips a byte inside the last record's contents
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer value = ByteBuffer.allocate(1);
+			long position = size - Integer.BYTES - 1;
+			channel.read(value, position);
+			value.put(0, (byte) ~value.get(0));
+			value.rewind();
+			channel.write(value, position);
+		}
+
+		List<Long> sequences = new ArrayList<Long>();
+		try (Journal journal = new Journal(path, 0)) {
+			assertEquals(1, journal.getLastSequence());
+			journal.forEachRecord(0, (sequence, read) -> sequences.add(sequence));
+		}
+		assertEquals(List.of(1L), sequences);
+		assertEquals(size / 2, Files.size(path));
+	}
+
+	@Test
+	void cutsOffPartiallyWrittenRecords() throws IOException {
+		Path path = this.directory.resolve("journal");
+		byte[] record = JournalEntry.encode(List.of(JournalEntry.updateName(1, "Main")));
+		try (Journal journal = new Journal(path, 0)) {
+			journal.append(List.of(record, record));
+		}
+		long size = Files.size(path);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.truncate(size - 3);
+		}
+
+		try (Journal journal = new Journal(path, 0)) {
+			assertEquals(1, journal.getLastSequence());
+			// Appending continues after the last valid record
+			assertEquals(2, journal.append(List.of(record)));
+		}
+		assertEquals(size, Files.size(path));
+	}
+}
@@ -0,0 +1,132 @@
+package sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests upgrading version 0 databases, both new ones and the ones saved before migrations existed
+ * @author pogegril
+ */
+class MigrationsTest {
+
+	// Schema version of the last migration script
+	private static final int LATEST = 7;
+
+	private Connection connection;
+
+	@BeforeEach
+	void open() throws SQLException {
+		this.connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+	}
+
+	@AfterEach
+	void close() throws SQLException {
+		this.connection.close();
+	}
+
+	/**
+	 * Creates the tables as the program saved them before schema versions were kept
+	 */
+	private void createUnversionedSchema() throws SQLException {
+		try (Statement statement = this.connection.createStatement()) {
+			statement.execute("CREATE TABLE accounts(name TEXT NOT NULL, id INTEGER PRIMARY KEY, balance NUMERIC NOT NULL, currency INTEGER NOT NULL)");
+			statement.execute("CREATE TABLE transactions(name TEXT NOT NULL, description TEXT, tag TEXT NOT NULL, account_id INTEGER NOT NULL, id INTEGER PRIMARY KEY, "
+					+ "date TEXT NOT NULL, amount NUMERIC NOT NULL, FOREIGN KEY(account_id) REFERENCES accounts(id))");
+		}
+	}
+
+	/**
+	 * Returns the first column of the query's first row
+	 * @param sql - Query
+	 * @return value
+	 */
+	private long queryLong(String sql) throws SQLException {
+		try (Statement statement = this.connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+			assertTrue(result.next(), "No rows for " + sql);
+			return result.getLong(1);
+		}
+	}
+
+	@Test
+	void migratesAnEmptyDatabase() throws IOException, SQLException {
+		assertEquals(0, Migrations.getVersion(this.connection));
+		assertEquals(LATEST, Migrations.migrate(this.connection));
+		assertEquals(LATEST, Migrations.getVersion(this.connection));
+
+		assertEquals(0, queryLong("SELECT COUNT(*) FROM accounts"));
+		assertEquals(0, queryLong("SELECT COUNT(*) FROM transactions"));
+		assertEquals(0, queryLong("SELECT counter FROM changes WHERE id = 1"));
+		assertEquals(0, queryLong("SELECT COUNT(*) FROM archives"));
+	}
+
+	@Test
+	void migratingTwiceChangesNothing() throws IOException, SQLException {
+		Migrations.migrate(this.connection);
+		assertEquals(LATEST, Migrations.migrate(this.connection));
+		assertEquals(LATEST, Migrations.getVersion(this.connection));
+	}
+
+	@Test
+	void convertsUnversionedData() throws IOException, SQLException {
+		createUnversionedSchema();
+		try (Statement statement = this.connection.createStatement()) {
+			statement.execute("INSERT INTO accounts(name, id, balance, currency) VALUES ('Main', 1, 10.5, 0), ('Cash', 2, 1000, 3)");
+			statement.execute("INSERT INTO transactions(name, description, tag, account_id, id, date, amount) VALUES "
+					+ "('Coffee', NULL, 'Food', 1, 1, '2024-01-05', -1.25), "
+					+ "('Refund', 'Shop', 'Other', 1, 2, '2024-01-06', 0.125), "
+					+ "('Gift', NULL, 'Income', 2, 3, '2023-12-31', 500)");
+		}
+
+		assertEquals(LATEST, Migrations.migrate(this.connection));
+
+		// Euro keeps two decimals unless its amounts need more, Yen has none
+		assertEquals(3, queryLong("SELECT scale FROM accounts WHERE id = 1"));
+		assertEquals(10500, queryLong("SELECT balance FROM accounts WHERE id = 1"));
+		assertEquals(0, queryLong("SELECT scale FROM accounts WHERE id = 2"));
+		assertEquals(1000, queryLong("SELECT balance FROM accounts WHERE id = 2"));
+
+		assertEquals(-1250, queryLong("SELECT amount FROM transactions WHERE id = 1"));
+		assertEquals(125, queryLong("SELECT amount FROM transactions WHERE id = 2"));
+		assertEquals(500, queryLong("SELECT amount FROM transactions WHERE id = 3"));
+		assertEquals(LocalDate.of(2024, 1, 5).toEpochDay(), queryLong("SELECT date FROM transactions WHERE id = 1"));
+		assertEquals(LocalDate.of(2023, 12, 31).toEpochDay(), queryLong("SELECT date FROM transactions WHERE id = 3"));
+
+		// Existing balances are taken as correct
+		assertEquals(10500 + 1250 - 125, queryLong("SELECT opening FROM accounts WHERE id = 1"));
+		assertEquals(500, queryLong("SELECT opening FROM accounts WHERE id = 2"));
+
+		// Rebuilt tables still count their changes
+		long changes = queryLong("SELECT counter FROM changes WHERE id = 1");
+		try (Statement statement = this.connection.createStatement()) {
+			statement.execute("UPDATE accounts SET balance = balance WHERE id = 1");
+		}
+		assertEquals(changes + 1, queryLong("SELECT counter FROM changes WHERE id = 1"));
+	}
+
+	@Test
+	void stopsBeforeRoundingAmounts() throws IOException, SQLException {
+		createUnversionedSchema();
+		try (Statement statement = this.connection.createStatement()) {
+			statement.execute("INSERT INTO accounts(name, id, balance, currency) VALUES ('Main', 1, 0, 0)");
+			statement.execute("INSERT INTO transactions(name, description, tag, account_id, id, date, amount) VALUES ('Dust', NULL, 'Other', 1, 1, '2024-01-05', 0.1234567)");
+		}
+
+		assertThrows(SQLException.class, () -> Migrations.migrate(this.connection));
+		// The failing migration is rolled back while the earlier ones stay
+		assertEquals(2, Migrations.getVersion(this.connection));
+		assertEquals(1, queryLong("SELECT COUNT(*) FROM transactions WHERE amount = 0.1234567"));
+	}
+}